@@ -17,4 +17,44 @@ if ! [ -f "$POTTERY_JAR" ]; then
   curl -L -s "${DOWNLOAD_URL}" > "${POTTERY_JAR}"
 fi
 
+# with POTTERY_DAEMON=1 commands run in a daemon that keeps the build warm, started the first time it is needed
+# releases without the daemon client run every command with java -jar
+if [ "${POTTERY_DAEMON}" = "1" ]; then
+  if ! command -v unzip > /dev/null; then
+    echo "POTTERY_DAEMON needs unzip to check ${POTTERY_JAR}, running without the daemon."
+    POTTERY_DAEMON=0
+  elif ! unzip -l "${POTTERY_JAR}" | grep -q "cat/pottery/ui/daemon/DaemonClient.class"; then
+    echo "${POTTERY_JAR} has no daemon client, running without the daemon."
+    POTTERY_DAEMON=0
+  fi
+fi
+
+if [ "${POTTERY_DAEMON}" = "1" ] && [ -n "$1" ] && [ "$1" != "watch" ] && [ "$1" != "init" ] && [ "$1" != "daemon" ]; then
+  DAEMON_SOCKET=.pottery/daemon.sock
+  DAEMON_CLIENT="java -XX:TieredStopAtLevel=1 -Xshare:auto -cp ${POTTERY_JAR} cat.pottery.ui.daemon.DaemonClient"
+
+  set +e
+  ${DAEMON_CLIENT} "$@"
+  STATUS=$?
+  set -e
+
+  # 111 means there was no daemon to run the command
+  if [ "$STATUS" != "111" ]; then
+    exit $STATUS
+  fi
+
+  rm -f "$DAEMON_SOCKET"
+  nohup java -jar ${POTTERY_JAR} daemon > .pottery/daemon.log 2>&1 &
+  for _ in $(seq 1 100); do
+    [ -S "$DAEMON_SOCKET" ] && break
+    sleep 0.1
+  done
+
+  if [ -S "$DAEMON_SOCKET" ]; then
+    exec ${DAEMON_CLIENT} "$@"
+  fi
+
+  echo "Could not start the daemon, see .pottery/daemon.log. Running without it."
+fi
+
 java -jar ${POTTERY_JAR} "$@"
\ No newline at end of file
@@ -0,0 +1,167 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.compiler;
+
+import cat.pottery.telemetry.Log;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.atomic.LongAdder;
+
+// the classes of a whole source tree, by a key that covers everything the compilation depends on, so going back to a tree
+// that was already compiled, like when switching branches, does not need the compiler
+public final class BuildCache {
+    public record Statistics(long hits, long misses, long stored) {
+        public Statistics since(Statistics earlier) {
+            return new Statistics(hits - earlier.hits, misses - earlier.misses, stored - earlier.stored);
+        }
+    }
+
+    private static final Duration UNUSED_ENTRY_LIFETIME = Duration.ofDays(30);
+
+    private final Path root;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder stored;
+
+    public BuildCache(Path root) {
+        this.root = root;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.stored = new LongAdder();
+    }
+
+    public static BuildCache fromEnvironment() {
+        var location = System.getenv("POTTERY_BUILD_CACHE");
+        if (location != null && !location.isBlank()) {
+            return new BuildCache(Path.of(location));
+        }
+
+        return new BuildCache(Path.of(System.getProperty("user.home"), ".pottery", "build-cache"));
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    // replaces the classes in the target directory with the ones of the entry, if it fails half way the target directory has
+    // classes of both
+    boolean restore(String key, Path targetDirectory) throws IOException {
+        var entry = root.resolve(key);
+        if (!Files.isDirectory(entry)) {
+            misses.increment();
+            return false;
+        }
+
+        try {
+            deleteClassFiles(targetDirectory);
+            try (var files = Files.walk(entry)) {
+                for (var file : files.filter(Files::isRegularFile).toList()) {
+                    var target = targetDirectory.resolve(entry.relativize(file).toString());
+                    Files.createDirectories(target.getParent());
+                    // never linked, javac writes over the class files in place
+                    Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            markUsed(entry);
+            hits.increment();
+            return true;
+        } catch (IOException e) {
+            misses.increment();
+            throw e;
+        }
+    }
+
+    // a cache shared by CI can be read only, the classes are restored anyway and the entry is only kept for less time
+    private static void markUsed(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not mark %s as used in the build cache.", entry);
+        }
+    }
+
+    // every successful compilation stores a full copy of the classes, even an incremental one, as any tree can be
+    // restored later. The copies of the trees that are not used again are removed after a while
+    void store(String key, Path targetDirectory, Collection<String> classFiles) {
+        var entry = root.resolve(key);
+        if (Files.isDirectory(entry)) {
+            return;
+        }
+
+        // other builds sharing the cache only see complete entries
+        var temporary = root.resolve(key + ".tmp-" + ProcessHandle.current().pid());
+        try {
+            for (var classFile : classFiles) {
+                var target = temporary.resolve(classFile);
+                Files.createDirectories(target.getParent());
+                Files.copy(targetDirectory.resolve(classFile), target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            Files.createDirectories(temporary);
+            Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+            stored.increment();
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            // another build stored the same classes meanwhile
+            delete(temporary);
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not store %s in the build cache.", targetDirectory);
+            delete(temporary);
+        }
+
+        removeUnusedEntries();
+    }
+
+    public Statistics statistics() {
+        return new Statistics(hits.sum(), misses.sum(), stored.sum());
+    }
+
+    private void removeUnusedEntries() {
+        var oldest = Instant.now().minus(UNUSED_ENTRY_LIFETIME);
+        try (var entries = Files.list(root)) {
+            for (var entry : entries.toList()) {
+                if (Files.getLastModifiedTime(entry).toInstant().isBefore(oldest)) {
+                    delete(entry);
+                }
+            }
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not remove the unused entries of the build cache at %s.", root);
+        }
+    }
+
+    private static void deleteClassFiles(Path targetDirectory) throws IOException {
+        if (!Files.isDirectory(targetDirectory)) {
+            return;
+        }
+
+        try (var files = Files.walk(targetDirectory)) {
+            for (var classFile : files.filter(path -> path.toString().endsWith(".class")).toList()) {
+                Files.deleteIfExists(classFile);
+            }
+        }
+    }
+
+    private static void delete(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+
+        try (var files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not delete %s from the build cache.", directory);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.compiler;
+
+import cat.pottery.telemetry.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+// what the last compilation of a source tree produced, so the next one only recompiles what a change can affect
+final class BuildState {
+    private static final int MAGIC = 0x504f5442;
+    private static final int FORMAT_VERSION = 3;
+
+    // the ABI of a class also covers its supertypes, because their members are part of its API too
+    record CompiledClass(String name, String source, Set<String> dependencies, Set<String> supertypes, boolean declaresConstants, String abi) {}
+
+    // the hash of the content of a source, and the class files it produced, relative to the target directory
+    record TrackedSource(String hash, Set<String> outputs) {}
+
+    // a class of another directory of the classpath, like target/classes for the tests, or of a jar
+    record UpstreamClass(String name, String location, boolean declaresConstants, String abi) {}
+
+    private final String release;
+    // the fingerprint of every jar of the classpath, so a new version of a jar only recompiles the classes using it
+    private final Map<String, String> jars;
+    private final Map<String, TrackedSource> sources;
+    private final Map<String, String> resources;
+    private final Map<String, CompiledClass> classes;
+    private final Map<String, UpstreamClass> upstreamClasses;
+
+    BuildState(String release, Map<String, String> jars, Map<String, TrackedSource> sources, Map<String, String> resources, Map<String, CompiledClass> classes, Map<String, UpstreamClass> upstreamClasses) {
+        this.release = release;
+        this.jars = jars;
+        this.sources = sources;
+        this.resources = resources;
+        this.classes = classes;
+        this.upstreamClasses = upstreamClasses;
+    }
+
+    static BuildState empty(String release, Map<String, String> jars) {
+        return new BuildState(release, new HashMap<>(jars), new HashMap<>(), new HashMap<>(), new HashMap<>(), new HashMap<>());
+    }
+
+    static Path stateFileOf(Path targetDirectory) {
+        return targetDirectory.resolveSibling(targetDirectory.getFileName() + ".state");
+    }
+
+    String release() {
+        return release;
+    }
+
+    Map<String, String> jars() {
+        return jars;
+    }
+
+    void trackJars(Map<String, String> currentJars) {
+        jars.clear();
+        jars.putAll(currentJars);
+    }
+
+    Map<String, UpstreamClass> upstreamClasses() {
+        return upstreamClasses;
+    }
+
+    Optional<CompiledClass> compiledClass(String name) {
+        return Optional.ofNullable(classes.get(name));
+    }
+
+    Map<String, CompiledClass> compiledClassesOf(Collection<String> sources) {
+        var sourceSet = new HashSet<>(sources);
+        var result = new HashMap<String, CompiledClass>();
+        for (var compiledClass : classes.values()) {
+            if (sourceSet.contains(compiledClass.source())) {
+                result.put(compiledClass.name(), compiledClass);
+            }
+        }
+
+        return result;
+    }
+
+    Set<String> sources() {
+        return Set.copyOf(sources.keySet());
+    }
+
+    // a class file deleted by hand is produced again
+    boolean isUpToDate(String source, String hash, Path targetDirectory) {
+        var tracked = sources.get(source);
+        return tracked != null && tracked.hash().equals(hash) && tracked.outputs().stream().allMatch(output -> Files.exists(targetDirectory.resolve(output)));
+    }
+
+    Set<String> outputsOf(String source) {
+        var tracked = sources.get(source);
+        return tracked == null ? Set.of() : tracked.outputs();
+    }
+
+    Set<String> resources() {
+        return Set.copyOf(resources.keySet());
+    }
+
+    Optional<String> resourceHash(String resource) {
+        return Optional.ofNullable(resources.get(resource));
+    }
+
+    void recordResource(String resource, String hash) {
+        resources.put(resource, hash);
+    }
+
+    void forgetResource(String resource) {
+        resources.remove(resource);
+    }
+
+    // only the classes referencing a class whose ABI changed need to be compiled again, if that changes their ABI too, the
+    // next round of compilation finds their users
+    Set<String> sourcesUsing(Set<String> changedClasses) {
+        var affected = new HashSet<String>();
+        for (var compiledClass : classes.values()) {
+            if (!Collections.disjoint(compiledClass.dependencies(), changedClasses)) {
+                affected.add(compiledClass.source());
+            }
+        }
+
+        return affected;
+    }
+
+    void forget(Collection<String> forgottenSources) {
+        var sourceSet = new HashSet<>(forgottenSources);
+        sources.keySet().removeAll(sourceSet);
+        classes.values().removeIf(compiledClass -> sourceSet.contains(compiledClass.source()));
+    }
+
+    void recordSource(String source, String hash, Set<String> outputs) {
+        sources.put(source, new TrackedSource(hash, outputs));
+    }
+
+    void record(String source, ClassFileModel classFile, String abi) {
+        classes.put(classFile.name(), new CompiledClass(classFile.name(), source, classFile.dependencies(), classFile.supertypes(), classFile.declaresConstants(), abi));
+    }
+
+    void trackUpstreamClasses(Collection<UpstreamClass> currentClasses) {
+        upstreamClasses.clear();
+        currentClasses.forEach(upstream -> upstreamClasses.put(upstream.name(), upstream));
+    }
+
+    Set<String> externalDependencies() {
+        var external = new HashSet<String>();
+        for (var compiledClass : classes.values()) {
+            for (var dependency : compiledClass.dependencies()) {
+                if (!classes.containsKey(dependency)) {
+                    external.add(dependency);
+                }
+            }
+        }
+
+        return external;
+    }
+
+    static Optional<BuildState> read(Path stateFile) {
+        if (!Files.exists(stateFile)) {
+            return Optional.empty();
+        }
+
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile)))) {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                return Optional.empty();
+            }
+
+            var release = input.readUTF();
+
+            var jarCount = input.readInt();
+            var jars = new HashMap<String, String>(jarCount * 2);
+            for (var i = 0; i < jarCount; i++) {
+                jars.put(input.readUTF(), input.readUTF());
+            }
+
+            var sourceCount = input.readInt();
+            var sources = new HashMap<String, TrackedSource>(sourceCount * 2);
+            for (var i = 0; i < sourceCount; i++) {
+                sources.put(input.readUTF(), new TrackedSource(input.readUTF(), readNames(input)));
+            }
+
+            var resourceCount = input.readInt();
+            var resources = new HashMap<String, String>(resourceCount * 2);
+            for (var i = 0; i < resourceCount; i++) {
+                resources.put(input.readUTF(), input.readUTF());
+            }
+
+            var classCount = input.readInt();
+            var classes = new HashMap<String, CompiledClass>(classCount * 2);
+            for (var i = 0; i < classCount; i++) {
+                var name = input.readUTF();
+                var source = input.readUTF();
+                var declaresConstants = input.readBoolean();
+                var abi = input.readUTF();
+                var dependencies = readNames(input);
+                var supertypes = readNames(input);
+
+                classes.put(name, new CompiledClass(name, source, dependencies, supertypes, declaresConstants, abi));
+            }
+
+            var upstreamCount = input.readInt();
+            var upstreamClasses = new HashMap<String, UpstreamClass>(upstreamCount * 2);
+            for (var i = 0; i < upstreamCount; i++) {
+                var upstream = new UpstreamClass(input.readUTF(), input.readUTF(), input.readBoolean(), input.readUTF());
+                upstreamClasses.put(upstream.name(), upstream);
+            }
+
+            return Optional.of(new BuildState(release, jars, sources, resources, classes, upstreamClasses));
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not read the build state %s, the whole tree will be compiled.", stateFile);
+            return Optional.empty();
+        }
+    }
+
+    void write(Path stateFile) {
+        var temporary = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+
+        try {
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeUTF(release);
+
+                output.writeInt(jars.size());
+                for (var jar : jars.entrySet()) {
+                    output.writeUTF(jar.getKey());
+                    output.writeUTF(jar.getValue());
+                }
+
+                output.writeInt(sources.size());
+                for (var source : sources.entrySet()) {
+                    output.writeUTF(source.getKey());
+                    output.writeUTF(source.getValue().hash());
+                    writeNames(output, source.getValue().outputs());
+                }
+
+                output.writeInt(resources.size());
+                for (var resource : resources.entrySet()) {
+                    output.writeUTF(resource.getKey());
+                    output.writeUTF(resource.getValue());
+                }
+
+                output.writeInt(classes.size());
+                for (var compiledClass : classes.values()) {
+                    output.writeUTF(compiledClass.name());
+                    output.writeUTF(compiledClass.source());
+                    output.writeBoolean(compiledClass.declaresConstants());
+                    output.writeUTF(compiledClass.abi());
+                    writeNames(output, compiledClass.dependencies());
+                    writeNames(output, compiledClass.supertypes());
+                }
+
+                output.writeInt(upstreamClasses.size());
+                for (var upstream : upstreamClasses.values()) {
+                    output.writeUTF(upstream.name());
+                    output.writeUTF(upstream.location());
+                    output.writeBoolean(upstream.declaresConstants());
+                    output.writeUTF(upstream.abi());
+                }
+            }
+
+            Files.move(temporary, stateFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not write the build state %s, the next build will compile the whole tree.", stateFile);
+        }
+    }
+
+    private static Set<String> readNames(DataInputStream input) throws IOException {
+        var count = input.readInt();
+        var names = new HashSet<String>(count * 2);
+        for (var i = 0; i < count; i++) {
+            names.add(input.readUTF());
+        }
+
+        return names;
+    }
+
+    private static void writeNames(DataOutputStream output, Set<String> names) throws IOException {
+        output.writeInt(names.size());
+        for (var name : names) {
+            output.writeUTF(name);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.compiler;
+
+import java.util.Optional;
+import java.util.Set;
+
+// class names are internal names, like java/lang/String, and the ABI is a hash of the non-private API of the class
+public record ClassFileModel(
+        String name,
+        Optional<String> sourceFile,
+        Set<String> dependencies,
+        Set<String> supertypes,
+        boolean declaresConstants,
+        String abi
+) {
+}
@@ -0,0 +1,288 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.compiler;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+// only reads what the incremental compiler needs: the classes referenced from the constant pool, whether it declares constants,
+// and the ABI of the class, which is everything another class can be compiled against
+public final class ClassFileReader {
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_SUPER = 0x0020;
+    // how a method is implemented does not change how it is called
+    private static final int IMPLEMENTATION_FLAGS = 0x0020 | 0x0100 | 0x0800;
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    public ClassFileModel read(Path classFile) throws IOException {
+        return read(Files.readAllBytes(classFile));
+    }
+
+    public ClassFileModel read(byte[] content) throws IOException {
+        try {
+            var buffer = ByteBuffer.wrap(content);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a class file.");
+            }
+
+            // minor and major version
+            buffer.getInt();
+
+            var constantPoolCount = Short.toUnsignedInt(buffer.getShort());
+            var utf8 = new String[constantPoolCount];
+            var classNameIndex = new int[constantPoolCount];
+            var constants = new String[constantPoolCount];
+            var stringIndex = new int[constantPoolCount];
+
+            for (var i = 1; i < constantPoolCount; i++) {
+                var tag = Byte.toUnsignedInt(buffer.get());
+                switch (tag) {
+                    case UTF8 -> {
+                        var bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+                        buffer.get(bytes);
+                        // class files use modified UTF-8, which only differs for the null character and supplementary characters
+                        utf8[i] = new String(bytes, StandardCharsets.UTF_8);
+                    }
+                    case CLASS -> classNameIndex[i] = Short.toUnsignedInt(buffer.getShort());
+                    case STRING -> stringIndex[i] = Short.toUnsignedInt(buffer.getShort());
+                    case METHOD_TYPE, MODULE, PACKAGE -> buffer.getShort();
+                    case METHOD_HANDLE -> {
+                        buffer.get();
+                        buffer.getShort();
+                    }
+                    case INTEGER, FLOAT -> constants[i] = tag + ":" + buffer.getInt();
+                    case FIELD_REF, METHOD_REF, INTERFACE_METHOD_REF, NAME_AND_TYPE, DYNAMIC, INVOKE_DYNAMIC -> buffer.getInt();
+                    case LONG, DOUBLE -> {
+                        constants[i] = tag + ":" + buffer.getLong();
+                        // 8 byte constants take two entries of the pool
+                        i++;
+                    }
+                    default -> throw new IOException("Unknown constant pool tag %d.".formatted(tag));
+                }
+            }
+
+            for (var i = 1; i < constantPoolCount; i++) {
+                if (stringIndex[i] != 0) {
+                    constants[i] = STRING + ":" + utf8[stringIndex[i]];
+                }
+            }
+
+            var accessFlags = Short.toUnsignedInt(buffer.getShort()) & ~ACC_SUPER;
+            var name = utf8[classNameIndex[Short.toUnsignedInt(buffer.getShort())]];
+
+            var dependencies = new HashSet<String>();
+            for (var i = 1; i < constantPoolCount; i++) {
+                if (classNameIndex[i] != 0) {
+                    addClassName(utf8[classNameIndex[i]], dependencies);
+                } else if (utf8[i] != null) {
+                    // descriptors and generic signatures name the types that are never referenced as a class constant
+                    addDescriptorTypes(utf8[i], dependencies);
+                }
+            }
+            dependencies.remove(name);
+
+            var superClassIndex = Short.toUnsignedInt(buffer.getShort());
+            var interfaces = new ArrayList<String>();
+            var interfaceCount = Short.toUnsignedInt(buffer.getShort());
+            for (var i = 0; i < interfaceCount; i++) {
+                interfaces.add(utf8[classNameIndex[Short.toUnsignedInt(buffer.getShort())]]);
+            }
+
+            var abi = new ArrayList<String>();
+            abi.add("class %d %s extends %s implements %s".formatted(accessFlags, name, superClassIndex == 0 ? "" : utf8[classNameIndex[superClassIndex]], interfaces.stream().sorted().toList()));
+
+            var declaresConstants = false;
+            var members = new ArrayList<String>();
+            var fieldCount = Short.toUnsignedInt(buffer.getShort());
+            for (var i = 0; i < fieldCount; i++) {
+                var fieldFlags = Short.toUnsignedInt(buffer.getShort());
+                var field = new StringBuilder("field %d %s %s".formatted(fieldFlags, utf8[Short.toUnsignedInt(buffer.getShort())], utf8[Short.toUnsignedInt(buffer.getShort())]));
+                var attributeCount = Short.toUnsignedInt(buffer.getShort());
+                for (var j = 0; j < attributeCount; j++) {
+                    var attributeName = utf8[Short.toUnsignedInt(buffer.getShort())];
+                    var length = buffer.getInt();
+                    var end = buffer.position() + length;
+                    if ("ConstantValue".equals(attributeName)) {
+                        // compile-time constants are inlined by javac, so their users do not reference this class anymore
+                        declaresConstants |= (fieldFlags & ACC_PRIVATE) == 0;
+                        field.append(" = ").append(constants[Short.toUnsignedInt(buffer.getShort())]);
+                    } else if ("Signature".equals(attributeName)) {
+                        field.append(" signature ").append(utf8[Short.toUnsignedInt(buffer.getShort())]);
+                    }
+                    buffer.position(end);
+                }
+
+                if ((fieldFlags & ACC_PRIVATE) == 0) {
+                    members.add(field.toString());
+                }
+            }
+
+            var methodCount = Short.toUnsignedInt(buffer.getShort());
+            for (var i = 0; i < methodCount; i++) {
+                var methodFlags = Short.toUnsignedInt(buffer.getShort());
+                var method = new StringBuilder("method %d %s %s".formatted(methodFlags & ~IMPLEMENTATION_FLAGS, utf8[Short.toUnsignedInt(buffer.getShort())], utf8[Short.toUnsignedInt(buffer.getShort())]));
+                var attributeCount = Short.toUnsignedInt(buffer.getShort());
+                for (var j = 0; j < attributeCount; j++) {
+                    var attributeName = utf8[Short.toUnsignedInt(buffer.getShort())];
+                    var length = buffer.getInt();
+                    var end = buffer.position() + length;
+                    if ("Signature".equals(attributeName)) {
+                        method.append(" signature ").append(utf8[Short.toUnsignedInt(buffer.getShort())]);
+                    } else if ("Exceptions".equals(attributeName)) {
+                        method.append(" throws ").append(classNames(buffer, utf8, classNameIndex));
+                    }
+                    buffer.position(end);
+                }
+
+                if ((methodFlags & ACC_PRIVATE) == 0) {
+                    members.add(method.toString());
+                }
+            }
+
+            Optional<String> sourceFile = Optional.empty();
+            var attributeCount = Short.toUnsignedInt(buffer.getShort());
+            for (var i = 0; i < attributeCount; i++) {
+                var attributeName = utf8[Short.toUnsignedInt(buffer.getShort())];
+                var length = buffer.getInt();
+                var end = buffer.position() + length;
+                switch (attributeName) {
+                    case "SourceFile" -> sourceFile = Optional.ofNullable(utf8[Short.toUnsignedInt(buffer.getShort())]);
+                    case "Signature" -> abi.add("signature " + utf8[Short.toUnsignedInt(buffer.getShort())]);
+                    case "PermittedSubclasses" -> abi.add("permits " + classNames(buffer, utf8, classNameIndex).stream().sorted().toList());
+                    case "Record" -> {
+                        var components = new ArrayList<String>();
+                        var componentCount = Short.toUnsignedInt(buffer.getShort());
+                        for (var j = 0; j < componentCount; j++) {
+                            components.add(utf8[Short.toUnsignedInt(buffer.getShort())] + " " + utf8[Short.toUnsignedInt(buffer.getShort())]);
+                            skipAttributes(buffer);
+                        }
+                        abi.add("record " + components);
+                    }
+                    case "InnerClasses" -> {
+                        // a nested class keeps its real visibility here, its own access flags can only be public or package-private
+                        var innerClassCount = Short.toUnsignedInt(buffer.getShort());
+                        for (var j = 0; j < innerClassCount; j++) {
+                            var innerClassIndex = Short.toUnsignedInt(buffer.getShort());
+                            buffer.getShort();
+                            buffer.getShort();
+                            var innerFlags = Short.toUnsignedInt(buffer.getShort());
+                            if (innerClassIndex != 0 && name.equals(utf8[classNameIndex[innerClassIndex]])) {
+                                abi.add("nested " + innerFlags);
+                            }
+                        }
+                    }
+                    default -> {
+                    }
+                }
+                buffer.position(end);
+            }
+
+            // the order of the members in the class file can change when the source is edited, without changing the ABI
+            members.sort(null);
+            abi.addAll(members);
+
+            var supertypes = new HashSet<>(interfaces);
+            if (superClassIndex != 0) {
+                supertypes.add(utf8[classNameIndex[superClassIndex]]);
+            }
+
+            return new ClassFileModel(name, sourceFile, Set.copyOf(dependencies), Set.copyOf(supertypes), declaresConstants, hashOf(abi));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Malformed class file.", e);
+        }
+    }
+
+    private static List<String> classNames(ByteBuffer buffer, String[] utf8, int[] classNameIndex) {
+        var names = new ArrayList<String>();
+        var count = Short.toUnsignedInt(buffer.getShort());
+        for (var i = 0; i < count; i++) {
+            names.add(utf8[classNameIndex[Short.toUnsignedInt(buffer.getShort())]]);
+        }
+
+        return names;
+    }
+
+    private static String hashOf(List<String> abi) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (var line : abi) {
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void addClassName(String name, Set<String> dependencies) {
+        if (name.startsWith("[")) {
+            addDescriptorTypes(name, dependencies);
+        } else {
+            dependencies.add(name);
+        }
+    }
+
+    private static void addDescriptorTypes(String descriptor, Set<String> dependencies) {
+        var start = descriptor.indexOf('L');
+        while (start >= 0) {
+            var end = start + 1;
+            while (end < descriptor.length() && isNameCharacter(descriptor.charAt(end))) {
+                end++;
+            }
+
+            if (end < descriptor.length() && end > start + 1 && (descriptor.charAt(end) == ';' || descriptor.charAt(end) == '<')) {
+                dependencies.add(descriptor.substring(start + 1, end));
+            }
+
+            start = descriptor.indexOf('L', end);
+        }
+    }
+
+    private static boolean isNameCharacter(char character) {
+        return character == '/' || character == '$' || Character.isJavaIdentifierPart(character);
+    }
+
+    private static void skipAttributes(ByteBuffer buffer) {
+        var attributeCount = Short.toUnsignedInt(buffer.getShort());
+        for (var i = 0; i < attributeCount; i++) {
+            buffer.getShort();
+            skip(buffer, buffer.getInt());
+        }
+    }
+
+    private static void skip(ByteBuffer buffer, int bytes) {
+        buffer.position(buffer.position() + bytes);
+    }
+}
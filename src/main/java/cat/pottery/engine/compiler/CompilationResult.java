@@ -0,0 +1,19 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.compiler;
+
+import java.util.List;
+
+public sealed interface CompilationResult {
+    record UpToDate() implements CompilationResult {}
+
+    record Compiled(int sourceFiles) implements CompilationResult {}
+
+    record Restored(int sourceFiles) implements CompilationResult {}
+
+    record Failed(List<String> errors) implements CompilationResult {}
+}
@@ -8,80 +8,84 @@ package cat.pottery.engine.compiler;
 
 import cat.pottery.engine.dependencies.maven.DownloadedDependency;
 import cat.pottery.engine.toolchain.Toolchain;
+import cat.pottery.telemetry.Log;
+import cat.pottery.telemetry.Timing;
 import cat.pottery.ui.artifact.ArtifactDocument;
 
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.LinkedList;
-import java.util.List;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
 
 public final class IncrementalCompiler {
+    private static final String TIMING_ID = "incremental-compiler";
+    private static IncrementalCompiler instance;
+
     private final Toolchain toolchain;
+    private final JavaCompiler javaCompiler;
+    private final ClassFileReader classFileReader;
+    private final BuildCache buildCache;
+    // hashing a jar is only worth it once, jars are replaced instead of changed
+    private final Map<String, String> jarHashes;
+    private String compilerVersion;
+    private StandardJavaFileManager fileManager;
+    private List<String> openedClasspath;
 
-    public IncrementalCompiler(Toolchain toolchain) {
+    public IncrementalCompiler(Toolchain toolchain, BuildCache buildCache) {
         this.toolchain = toolchain;
+        // a JRE has no compiler, in that case javac from the toolchain is forked for every compilation
+        this.javaCompiler = ToolProvider.getSystemJavaCompiler();
+        this.classFileReader = new ClassFileReader();
+        this.buildCache = buildCache;
+        this.jarHashes = new HashMap<>();
     }
 
-    private record CompilationUnit(Path javaClass, Path classFile) {}
+    // shared by all commands, so the compiler and the opened classpath stay warm between the iterations of watch
+    public static synchronized IncrementalCompiler getInstance() {
+        if (instance == null) {
+            instance = new IncrementalCompiler(Toolchain.systemDefault(), BuildCache.fromEnvironment());
+        }
 
-    public Process compileTree(ArtifactDocument artifactDocument, Path sourceCode, Path targetDirectory, List<DownloadedDependency> dependencies) {
-        var classpath = dependencies.stream().map(e -> e.downloadPath().toString()).collect(Collectors.joining(":")) + ":" + targetDirectory.toString();
-        classpath += ":target/classes/";
+        return instance;
+    }
 
-        var filesToCompile = new LinkedList<CompilationUnit>();
+    public synchronized CompilationResult compileTree(ArtifactDocument artifactDocument, Path sourceCode, Path targetDirectory, List<DownloadedDependency> dependencies) {
+        var classpath = Stream.concat(dependencies.stream().map(DownloadedDependency::downloadPath), Stream.of(targetDirectory, Path.of("target", "classes").toAbsolutePath()))
+                .distinct()
+                .toList();
+
+        var sources = new HashMap<String, Path>();
+        var resources = new HashMap<String, Path>();
 
         try {
             Files.walkFileTree(sourceCode, new SimpleFileVisitor<>() {
                 @Override
                 public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                    var relativeToSource = file.toString().replace(sourceCode + "/", "");
-                    var classFileName = relativeToSource.replace(".java", ".class");
-                    var classFile = targetDirectory.resolve(classFileName);
-
+                    var relativeToSource = sourceCode.relativize(file).toString();
                     if (file.toString().endsWith(".java")) {
-                        // check if needs to be compiled
-
-                        if (!classFile.toFile().exists()) {
-                            filesToCompile.add(new CompilationUnit(file, classFile));
-                        } else {
-                            try {
-                                var classFileAttr = Files.readAttributes(classFile, BasicFileAttributes.class);
-                                if (attrs.lastModifiedTime().compareTo(classFileAttr.lastModifiedTime()) >= 1 ||
-                                        attrs.lastModifiedTime().compareTo(classFileAttr.creationTime()) >= 1) {
-                                    filesToCompile.add(new CompilationUnit(file, classFile));
-                                }
-                            } catch (IOException e) {
-                                filesToCompile.add(new CompilationUnit(file, classFile));
-                            }
-                        }
+                        sources.put(relativeToSource, file);
                     } else {
-
-                        if (!classFile.toFile().exists()) { // it's a resource, just copy it
-                            try {
-                                Files.copy(file, classFile);
-                            } catch (IOException e) {
-                                throw new Error(e);
-                            }
-                        } else {
-                            try {
-                                var classFileAttr = Files.readAttributes(classFile, BasicFileAttributes.class);
-                                if (attrs.lastModifiedTime().compareTo(classFileAttr.lastModifiedTime()) >= 1 ||
-                                        attrs.lastModifiedTime().compareTo(classFileAttr.creationTime()) >= 1) {
-                                    Files.copy(file, classFile);
-                                }
-                            } catch (IOException e) {
-                                try {
-                                    Files.copy(file, classFile);
-                                } catch (IOException ex) {
-                                    throw new Error(ex);
-                                }
-                            }
-                        }
+                        resources.put(relativeToSource, file);
                     }
 
                     return FileVisitResult.CONTINUE;
@@ -91,26 +95,523 @@ public final class IncrementalCompiler {
             throw new Error(e);
         }
 
-        if (filesToCompile.isEmpty()) {
-            return null;
+        var release = artifactDocument.artifact().platform().version();
+        var jars = new HashMap<String, String>();
+        classpath.stream().filter(Files::isRegularFile).forEach(jar -> jars.put(jar.toString(), fingerprintOf(jar)));
+        var upstreamClasspath = classpath.stream().filter(path -> !path.equals(targetDirectory)).toList();
+        var stateFile = BuildState.stateFileOf(targetDirectory);
+        var previousState = BuildState.read(stateFile).filter(state -> state.release().equals(release));
+        var state = previousState.orElseGet(() -> BuildState.empty(release, jars));
+
+        // timestamps can not be trusted after a checkout or restoring a cache, so the content of the files decides what changed
+        var sourceHashes = new HashMap<String, String>();
+        sources.forEach((source, file) -> sourceHashes.put(source, hashOf(file)));
+        var stateChanged = copyResources(state, resources, targetDirectory) || previousState.isEmpty();
+
+        var toCompile = new HashSet<String>();
+        if (previousState.isEmpty()) {
+            // without a previous state any class could be affected, and the classes in the target directory could come from sources that do not exist anymore
+            deleteClassFiles(targetDirectory);
+            toCompile.addAll(sources.keySet());
+        } else {
+            var jarsChanged = !state.jars().equals(jars);
+            var changedUpstream = changedUpstreamClasses(state, upstreamClasspath, jarsChanged);
+
+            // the classes of deleted sources are gone for good, so their users need to be compiled again, most likely to fail
+            var deletedSources = state.sources().stream().filter(source -> !sources.containsKey(source)).toList();
+            var deletedClasses = state.compiledClassesOf(deletedSources).values();
+            deleteOutputs(state, targetDirectory, deletedSources);
+            state.forget(deletedSources);
+
+            if (changedUpstream.stream().anyMatch(BuildState.UpstreamClass::declaresConstants) || deletedClasses.stream().anyMatch(BuildState.CompiledClass::declaresConstants)) {
+                toCompile.addAll(sources.keySet());
+            } else {
+                var removedClasses = new HashSet<String>();
+                changedUpstream.forEach(upstream -> removedClasses.add(upstream.name()));
+                deletedClasses.forEach(deleted -> removedClasses.add(deleted.name()));
+
+                toCompile.addAll(state.sourcesUsing(removedClasses));
+                sources.keySet().stream()
+                        .filter(source -> !state.isUpToDate(source, sourceHashes.get(source), targetDirectory))
+                        .forEach(toCompile::add);
+            }
+
+            if (!deletedSources.isEmpty()) {
+                stateChanged = true;
+                Log.getInstance().info("Removed the classes of %d deleted source files from %s.", deletedSources.size(), targetDirectory);
+            }
+        }
+
+        toCompile.retainAll(sources.keySet());
+        if (toCompile.isEmpty()) {
+            if (previousState.isPresent() && !state.jars().equals(jars)) {
+                // the jars changed without changing the ABI of the classes in use, so there is no need to look into them again
+                state.trackJars(jars);
+                stateChanged = true;
+            }
+
+            if (stateChanged) {
+                state.write(stateFile);
+            }
+
+            return new CompilationResult.UpToDate();
+        }
+
+        var cacheKey = cacheKeyOf(release, upstreamClasspath, sourceHashes);
+        Timing.getInstance().start(TIMING_ID);
+        try {
+            if (buildCache.restore(cacheKey, targetDirectory)) {
+                state.forget(state.sources());
+                recordOutputs(state, sourceCode, targetDirectory, sources.keySet(), sourceHashes, new HashMap<>());
+                state.trackUpstreamClasses(locateUpstreamClasses(state.externalDependencies(), upstreamClasspath).values());
+                state.trackJars(jars);
+                state.write(stateFile);
+
+                var duration = Timing.getInstance().end(TIMING_ID);
+                Log.getInstance().info("Restored %d compiled source files of %s from the build cache in %s.", sources.size(), sourceCode, duration);
+                return new CompilationResult.Restored(sources.size());
+            }
+        } catch (IOException e) {
+            // the target directory could have classes from the cache and from before, only compiling everything is safe
+            Log.getInstance().warn("Could not restore %s from the build cache, compiling the whole tree.", targetDirectory);
+            deleteClassFiles(targetDirectory);
+            state.forget(state.sources());
+            toCompile.addAll(sources.keySet());
+        }
+
+        var compiled = new HashSet<String>();
+        CompilationResult result = null;
+
+        while (!toCompile.isEmpty()) {
+            var previousClasses = state.compiledClassesOf(toCompile);
+            var outputs = new HashMap<Path, List<Path>>();
+            var sourcePaths = toCompile.stream().sorted().map(sources::get).toList();
+            // a nested or secondary class that is not in the source anymore would be left behind by javac
+            deleteOutputs(state, targetDirectory, toCompile);
+
+            result = javaCompiler == null
+                    ? compileWithToolchain(release, classpath, targetDirectory, sourcePaths)
+                    : compileInProcess(release, classpath, targetDirectory, sourcePaths, outputs);
+
+            state.forget(toCompile);
+            if (result instanceof CompilationResult.Failed) {
+                // the sources that were being compiled are unknown to the state now, so they are compiled again next time
+                break;
+            }
+
+            compiled.addAll(toCompile);
+            recordOutputs(state, sourceCode, targetDirectory, toCompile, sourceHashes, outputs);
+
+            var changedClasses = changedClassesOf(state, previousClasses, toCompile);
+            toCompile = new HashSet<>(changedClasses.stream().anyMatch(BuildState.CompiledClass::declaresConstants)
+                    ? sources.keySet()
+                    : state.sourcesUsing(changedClasses.stream().map(BuildState.CompiledClass::name).collect(Collectors.toSet())));
+            toCompile.removeAll(compiled);
+        }
+        var duration = Timing.getInstance().end(TIMING_ID);
+
+        if (!(result instanceof CompilationResult.Failed)) {
+            state.trackUpstreamClasses(locateUpstreamClasses(state.externalDependencies(), upstreamClasspath).values());
+            state.trackJars(jars);
+            buildCache.store(cacheKey, targetDirectory, state.sources().stream().flatMap(source -> state.outputsOf(source).stream()).toList());
+            result = new CompilationResult.Compiled(compiled.size());
+            Log.getInstance().info("Compiled %d source files from %s in %s.", compiled.size(), sourceCode, duration);
+        }
+
+        state.write(stateFile);
+        return result;
+    }
+
+    // classes of other directories can change on every build, the ones in jars only when a jar changes
+    private List<BuildState.UpstreamClass> changedUpstreamClasses(BuildState state, List<Path> upstreamClasspath, boolean jarsChanged) {
+        var candidates = state.upstreamClasses().values().stream()
+                .filter(upstream -> jarsChanged || Files.isDirectory(Path.of(upstream.location())))
+                .toList();
+
+        var current = locateUpstreamClasses(candidates.stream().map(BuildState.UpstreamClass::name).toList(), upstreamClasspath);
+        var changed = new ArrayList<BuildState.UpstreamClass>();
+        for (var previous : candidates) {
+            var now = current.get(previous.name());
+            if (now == null || !now.abi().equals(previous.abi())) {
+                // a constant that is not there anymore could be inlined in any class too
+                changed.add(now == null || previous.declaresConstants() ? previous : now);
+            }
+        }
+
+        return changed;
+    }
+
+    // classes that are gone, or whose ABI changed; a class unknown before is considered changed too, because it might have
+    // been forgotten after a failed compilation
+    private List<BuildState.CompiledClass> changedClassesOf(BuildState state, Map<String, BuildState.CompiledClass> previousClasses, Set<String> sources) {
+        var changed = new ArrayList<BuildState.CompiledClass>();
+        var currentClasses = state.compiledClassesOf(sources);
+        for (var previous : previousClasses.values()) {
+            var current = currentClasses.get(previous.name());
+            if (current == null || !current.abi().equals(previous.abi())) {
+                changed.add(previous.declaresConstants() || current == null ? previous : current);
+            }
+        }
+
+        for (var current : currentClasses.values()) {
+            if (!previousClasses.containsKey(current.name())) {
+                changed.add(current);
+            }
+        }
+
+        return changed;
+    }
+
+    // the first directory or jar of the classpath with the class wins, like for javac
+    private Map<String, BuildState.UpstreamClass> locateUpstreamClasses(Collection<String> names, List<Path> upstreamClasspath) {
+        var located = new HashMap<String, BuildState.UpstreamClass>();
+        var pending = new HashSet<>(names);
+
+        for (var location : upstreamClasspath) {
+            if (pending.isEmpty()) {
+                break;
+            }
+
+            if (Files.isDirectory(location)) {
+                // the state of the other tree already knows the ABI of its classes including their supertypes
+                var locationState = BuildState.read(BuildState.stateFileOf(location));
+                for (var name : List.copyOf(pending)) {
+                    var classFile = location.resolve(name + ".class");
+                    if (!Files.isRegularFile(classFile)) {
+                        continue;
+                    }
+
+                    var knownClass = locationState.flatMap(upstreamState -> upstreamState.compiledClass(name));
+                    try {
+                        var upstream = knownClass.isPresent()
+                                ? new BuildState.UpstreamClass(name, location.toString(), knownClass.get().declaresConstants(), knownClass.get().abi())
+                                : upstreamClassOf(location, classFileReader.read(classFile));
+                        located.put(name, upstream);
+                        pending.remove(name);
+                    } catch (IOException e) {
+                        Log.getInstance().warn("Could not read %s, the classes using it might not be recompiled when it changes.", classFile);
+                    }
+                }
+            } else if (Files.isRegularFile(location)) {
+                try (var zip = new ZipFile(location.toFile())) {
+                    for (var name : List.copyOf(pending)) {
+                        var entry = zip.getEntry(name + ".class");
+                        if (entry == null) {
+                            continue;
+                        }
+
+                        try (var input = zip.getInputStream(entry)) {
+                            located.put(name, upstreamClassOf(location, classFileReader.read(input.readAllBytes())));
+                            pending.remove(name);
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.getInstance().warn("Could not read %s, the classes using it might not be recompiled when it changes.", location);
+                }
+            }
+        }
+
+        return located;
+    }
+
+    private static BuildState.UpstreamClass upstreamClassOf(Path location, ClassFileModel model) {
+        return new BuildState.UpstreamClass(model.name(), location.toString(), model.declaresConstants(), model.abi());
+    }
+
+    private void recordOutputs(BuildState state, Path sourceCode, Path targetDirectory, Set<String> compiled, Map<String, String> sourceHashes, Map<Path, List<Path>> outputs) {
+        if (outputs.isEmpty()) {
+            // javac from the toolchain does not tell which classes come from each source, so they are found by their SourceFile attribute
+            outputs.putAll(outputsBySourceFile(sourceCode, targetDirectory));
+        }
+
+        var models = new HashMap<String, ClassFileModel>();
+        var sourceOf = new HashMap<String, String>();
+        for (var source : compiled) {
+            var classFiles = outputs.getOrDefault(sourceCode.resolve(source), List.of());
+            state.recordSource(source, sourceHashes.get(source), classFiles.stream().map(classFile -> targetDirectory.relativize(classFile).toString()).collect(Collectors.toSet()));
+            for (var classFile : classFiles) {
+                try {
+                    var model = classFileReader.read(classFile);
+                    models.put(model.name(), model);
+                    sourceOf.put(model.name(), source);
+                } catch (IOException e) {
+                    Log.getInstance().warn("Could not read %s, the classes using it might not be recompiled when it changes.", classFile);
+                }
+            }
+        }
+
+        var abis = new HashMap<String, String>();
+        for (var model : models.values()) {
+            state.record(sourceOf.get(model.name()), model, abiOf(model.name(), models, abis, state));
+        }
+    }
+
+    private String abiOf(String name, Map<String, ClassFileModel> models, Map<String, String> abis, BuildState state) {
+        var model = models.get(name);
+        if (model == null) {
+            return state.compiledClass(name).map(BuildState.CompiledClass::abi)
+                    .or(() -> Optional.ofNullable(state.upstreamClasses().get(name)).map(BuildState.UpstreamClass::abi))
+                    .orElse("");
+        }
+
+        var known = abis.get(name);
+        if (known != null) {
+            return known;
+        }
+
+        var abi = new StringBuilder(model.abi());
+        model.supertypes().stream().sorted().forEach(supertype -> abi.append('\n').append(supertype).append(' ').append(abiOf(supertype, models, abis, state)));
+        var result = hashOf(abi.toString().getBytes(StandardCharsets.UTF_8));
+        abis.put(name, result);
+        return result;
+    }
+
+    private Map<Path, List<Path>> outputsBySourceFile(Path sourceCode, Path targetDirectory) {
+        var outputs = new HashMap<Path, List<Path>>();
+        try (var classFiles = Files.walk(targetDirectory)) {
+            for (var classFile : classFiles.filter(path -> path.toString().endsWith(".class")).toList()) {
+                var model = classFileReader.read(classFile);
+                if (model.sourceFile().isPresent()) {
+                    var packageDirectory = model.name().contains("/") ? model.name().substring(0, model.name().lastIndexOf('/') + 1) : "";
+                    outputs.computeIfAbsent(sourceCode.resolve(packageDirectory + model.sourceFile().get()), ignored -> new ArrayList<>()).add(classFile);
+                }
+            }
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not read the classes in %s, the next build will compile the whole tree.", targetDirectory);
+        }
+
+        return outputs;
+    }
+
+    public BuildCache buildCache() {
+        return buildCache;
+    }
+
+    // the directories of the classpath are part of the key through their classes, and jars through their content, so the
+    // key is the same in any machine that builds the same tree
+    private String cacheKeyOf(String release, List<Path> upstreamClasspath, Map<String, String> sourceHashes) {
+        var key = new StringBuilder();
+        key.append("compiler ").append(compilerVersion()).append('\n');
+        key.append("release ").append(release).append('\n');
+
+        for (var location : upstreamClasspath) {
+            if (Files.isDirectory(location)) {
+                try (var files = Files.walk(location)) {
+                    for (var classFile : files.filter(path -> path.toString().endsWith(".class")).sorted().toList()) {
+                        key.append("class ").append(location.relativize(classFile)).append(' ').append(hashOf(classFile)).append('\n');
+                    }
+                } catch (IOException e) {
+                    throw new Error(e);
+                }
+            } else if (Files.isRegularFile(location)) {
+                var hash = jarHashes.computeIfAbsent(fingerprintOf(location), ignored -> hashOf(location));
+                key.append("jar ").append(hash).append('\n');
+            }
+        }
+
+        sourceHashes.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(source -> key.append("source ").append(source.getKey()).append(' ').append(source.getValue()).append('\n'));
+
+        return hashOf(key.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String compilerVersion() {
+        if (compilerVersion == null) {
+            compilerVersion = javaCompiler != null
+                    ? "%s %s".formatted(System.getProperty("java.vendor"), Runtime.version())
+                    : toolchain.javacVersion();
+        }
+
+        return compilerVersion;
+    }
+
+    private boolean copyResources(BuildState state, Map<String, Path> resources, Path targetDirectory) {
+        var changed = false;
+        for (var resource : resources.entrySet()) {
+            var hash = hashOf(resource.getValue());
+            var copy = targetDirectory.resolve(resource.getKey());
+            if (hash.equals(state.resourceHash(resource.getKey()).orElse(null)) && Files.exists(copy)) {
+                continue;
+            }
+
+            try {
+                Files.createDirectories(copy.getParent());
+                Files.copy(resource.getValue(), copy, StandardCopyOption.REPLACE_EXISTING);
+                state.recordResource(resource.getKey(), hash);
+                changed = true;
+            } catch (IOException e) {
+                throw new Error(e);
+            }
+        }
+
+        for (var deleted : state.resources().stream().filter(resource -> !resources.containsKey(resource)).toList()) {
+            try {
+                Files.deleteIfExists(targetDirectory.resolve(deleted));
+                state.forgetResource(deleted);
+                changed = true;
+            } catch (IOException e) {
+                Log.getInstance().warn("Could not delete %s, it was removed from the sources.", targetDirectory.resolve(deleted));
+            }
+        }
+
+        return changed;
+    }
+
+    private void deleteOutputs(BuildState state, Path targetDirectory, Collection<String> sources) {
+        for (var source : sources) {
+            for (var output : state.outputsOf(source)) {
+                try {
+                    Files.deleteIfExists(targetDirectory.resolve(output));
+                } catch (IOException e) {
+                    Log.getInstance().warn("Could not delete %s, it might end up in the packaged artifact.", targetDirectory.resolve(output));
+                }
+            }
+        }
+    }
+
+    private void deleteClassFiles(Path targetDirectory) {
+        if (!Files.isDirectory(targetDirectory)) {
+            return;
+        }
+
+        try (var files = Files.walk(targetDirectory)) {
+            for (var classFile : files.filter(path -> path.toString().endsWith(".class")).toList()) {
+                Files.deleteIfExists(classFile);
+            }
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not delete the classes in %s, some of them might be stale.", targetDirectory);
+        }
+    }
+
+    private static String hashOf(Path file) {
+        try {
+            return hashOf(Files.readAllBytes(file));
+        } catch (IOException e) {
+            throw new Error(e);
+        }
+    }
+
+    private static String hashOf(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private CompilationResult compileInProcess(String release, List<Path> classpath, Path targetDirectory, List<Path> sources, Map<Path, List<Path>> outputs) {
+        var errors = new ArrayList<String>();
+        var output = new StringWriter();
+
+        try {
+            var fileManager = fileManagerFor(classpath);
+            Files.createDirectories(targetDirectory);
+            fileManager.setLocationFromPaths(StandardLocation.CLASS_OUTPUT, List.of(targetDirectory));
+
+            // every class file is written next to the source it comes from, so the state knows what each source produced
+            var recordingFileManager = new ForwardingJavaFileManager<>(fileManager) {
+                @Override
+                public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+                    var outputFile = super.getJavaFileForOutput(location, className, kind, sibling);
+                    if (kind == JavaFileObject.Kind.CLASS && sibling != null && "file".equals(sibling.toUri().getScheme())) {
+                        outputs.computeIfAbsent(Path.of(sibling.toUri()), ignored -> new ArrayList<>()).add(Path.of(outputFile.toUri()));
+                    }
+
+                    return outputFile;
+                }
+            };
+
+            var task = javaCompiler.getTask(
+                    new PrintWriter(output),
+                    recordingFileManager,
+                    diagnostic -> {
+                        if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                            errors.add(describe(diagnostic));
+                        }
+                    },
+                    List.of("--release", release),
+                    null,
+                    fileManager.getJavaFileObjectsFromPaths(sources)
+            );
+
+            if (task.call()) {
+                return new CompilationResult.Compiled(sources.size());
+            }
+        } catch (IOException | RuntimeException e) {
+            errors.add("The compiler failed unexpectedly: %s".formatted(e));
         }
 
-        var output = targetDirectory.toString();
+        if (!output.toString().isBlank()) {
+            errors.add(output.toString().strip());
+        }
 
+        return new CompilationResult.Failed(errors);
+    }
+
+    // opened jars are kept by the file manager, so it is only replaced when a jar of the classpath changes
+    private StandardJavaFileManager fileManagerFor(List<Path> classpath) throws IOException {
+        var fingerprint = classpath.stream().map(this::fingerprintOf).toList();
+        if (fileManager == null || !fingerprint.equals(openedClasspath)) {
+            if (fileManager != null) {
+                fileManager.close();
+            }
+
+            fileManager = javaCompiler.getStandardFileManager(null, Locale.getDefault(), StandardCharsets.UTF_8);
+            openedClasspath = fingerprint;
+        }
+
+        fileManager.setLocationFromPaths(StandardLocation.CLASS_PATH, classpath);
+        return fileManager;
+    }
+
+    private String fingerprintOf(Path path) {
+        // directories are listed again on every compilation, only jars are cached
+        if (Files.isDirectory(path)) {
+            return path.toString();
+        }
+
+        try {
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return "%s:%d:%d".formatted(path, attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            return path.toString();
+        }
+    }
+
+    private static String describe(Diagnostic<? extends JavaFileObject> diagnostic) {
+        if (diagnostic.getSource() == null) {
+            return diagnostic.getMessage(Locale.getDefault());
+        }
+
+        return "%s:%d: %s".formatted(diagnostic.getSource().getName(), diagnostic.getLineNumber(), diagnostic.getMessage(Locale.getDefault()));
+    }
+
+    private CompilationResult compileWithToolchain(String release, List<Path> classpath, Path targetDirectory, List<Path> sources) {
         var cmd = new LinkedList<>(List.of(
                 toolchain.javac().toString(),
                 "--release",
-                artifactDocument.artifact().platform().version(),
+                release,
                 "-cp",
-                classpath,
+                classpath.stream().map(Path::toString).collect(Collectors.joining(":")),
                 "-d",
-                output
+                targetDirectory.toString()
         ));
-        cmd.addAll(filesToCompile.stream().map(e -> e.javaClass.toString()).toList());
+        cmd.addAll(sources.stream().map(Path::toString).toList());
+
         try {
-            return Runtime.getRuntime().exec(cmd.toArray(String[]::new));
+            var process = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+            var output = new String(process.getInputStream().readAllBytes());
+            if (process.waitFor() == 0) {
+                return new CompilationResult.Compiled(sources.size());
+            }
+
+            return new CompilationResult.Failed(output.lines().toList());
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            return new CompilationResult.Failed(List.of("Could not run %s: %s".formatted(toolchain.javac(), e.getMessage())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new CompilationResult.Failed(List.of("The compilation was interrupted."));
         }
     }
 }
@@ -0,0 +1,79 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies;
+
+import cat.pottery.engine.dependencies.maven.MavenDependency;
+import cat.pottery.engine.dependencies.maven.VersionRange;
+import cat.pottery.ui.artifact.Resolver;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// decides which of the versions found of an artifact ends up in the classpath
+@FunctionalInterface
+public interface ConflictStrategy {
+    // depth is the distance to the pottery.yaml: 0 for direct dependencies, 1 for their dependencies...
+    record Candidate(MavenDependency dependency, int depth) {
+        public boolean conflictsWith(MavenDependency chosen) {
+            if (dependency.decidedVersion().equals(chosen.decidedVersion())) {
+                return false;
+            }
+
+            // a range that accepts the chosen version is not a conflict
+            return !isRange() || !VersionRange.parse(dependency.version()).contains(chosen.parsedVersion());
+        }
+
+        public boolean isRange() {
+            return VersionRange.isRange(dependency.version());
+        }
+
+        @Override
+        public String toString() {
+            return "%s (depth %d)".formatted(dependency.version(), depth);
+        }
+    }
+
+    Comparator<Candidate> BY_VERSION = Comparator.comparing(candidate -> candidate.dependency().parsedVersion());
+
+    ConflictStrategy HIGHEST = (qualifiedName, candidates) -> versionsOf(candidates).stream().max(BY_VERSION).orElseThrow().dependency();
+
+    // like Maven, the version closest to the pottery.yaml wins, and the highest one if there is a tie
+    ConflictStrategy NEAREST = (qualifiedName, candidates) -> versionsOf(candidates).stream()
+            .max(Comparator.comparingInt(Candidate::depth).reversed().thenComparing(BY_VERSION))
+            .orElseThrow()
+            .dependency();
+
+    ConflictStrategy FAIL = (qualifiedName, candidates) -> {
+        var chosen = HIGHEST.choose(qualifiedName, candidates);
+        if (candidates.stream().anyMatch(candidate -> candidate.conflictsWith(chosen))) {
+            throw new DependencyConflictException(List.of(describe(qualifiedName, candidates)));
+        }
+
+        return chosen;
+    };
+
+    MavenDependency choose(String qualifiedName, List<Candidate> candidates);
+
+    static ConflictStrategy of(Resolver.Conflicts conflicts) {
+        return switch (conflicts) {
+            case NEAREST -> NEAREST;
+            case HIGHEST -> HIGHEST;
+            case FAIL -> FAIL;
+        };
+    }
+
+    // ranges only decide the version when nothing else requires a specific one
+    static List<Candidate> versionsOf(List<Candidate> candidates) {
+        var versions = candidates.stream().filter(candidate -> !candidate.isRange()).toList();
+        return versions.isEmpty() ? candidates : versions;
+    }
+
+    static String describe(String qualifiedName, List<Candidate> candidates) {
+        return "%s in %s".formatted(qualifiedName, candidates.stream().sorted(BY_VERSION).map(Candidate::toString).collect(Collectors.joining(", ")));
+    }
+}
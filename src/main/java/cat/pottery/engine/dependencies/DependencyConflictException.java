@@ -0,0 +1,26 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies;
+
+import java.io.Serial;
+import java.util.List;
+
+public final class DependencyConflictException extends DependencyResolutionException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<String> conflicts;
+
+    public DependencyConflictException(List<String> conflicts) {
+        super("Found %d dependencies required in different versions:%n  %s".formatted(conflicts.size(), String.join("%n  ".formatted(), conflicts)));
+        this.conflicts = List.copyOf(conflicts);
+    }
+
+    public List<String> conflicts() {
+        return conflicts;
+    }
+}
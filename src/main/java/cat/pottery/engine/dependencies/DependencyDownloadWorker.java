@@ -6,256 +6,316 @@
 
 package cat.pottery.engine.dependencies;
 
+import cat.pottery.engine.dependencies.maven.MavenBOM;
 import cat.pottery.engine.dependencies.maven.MavenDependency;
+import cat.pottery.engine.dependencies.maven.PomModel;
+import cat.pottery.engine.dependencies.maven.PomModelCache;
+import cat.pottery.engine.dependencies.maven.PomReader;
+import cat.pottery.engine.dependencies.repository.RepositoryClient;
+import cat.pottery.engine.dependencies.repository.RepositoryException;
+import cat.pottery.engine.dependencies.store.ArtifactStore;
 import cat.pottery.telemetry.Log;
 import cat.pottery.telemetry.Timing;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.FileNotFoundException;
-import java.net.MalformedURLException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import cat.pottery.ui.artifact.SnapshotPolicy;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.*;
-import java.util.function.Consumer;
-
-import static org.w3c.dom.Node.ELEMENT_NODE;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public final class DependencyDownloadWorker implements Runnable {
-    private record TransitiveDependencies(
-            Optional<MavenDependency> parentDependency,
-            List<MavenDependency> mavenDependencies
-    ) {}
+    // the jar download is not awaited, so this thread can go on while the download shares the connection. A POM
+    // waiting for its parent holds no slot, as the parent needs one to be processed
+    private record Resolution(CompletableFuture<Void> jar, CompletableFuture<Void> completion) {}
 
-    private final Queue<MavenDependency> dependenciesToDownload;
+    private final ResolutionFrontier frontier;
     private final DownloadManager downloadManager;
-    private final HttpClient httpClient;
-    private final DocumentBuilder xmlBuilder;
+    private final RepositoryClient repositoryClient;
+    private final PomReader pomReader;
+    private final PomModelCache pomModelCache;
     private final PomContextRegistry pomContextRegistry;
+    private final ArtifactStore artifactStore;
+    private final SnapshotPolicy snapshotPolicy;
 
-    public DependencyDownloadWorker(DownloadManager downloadManager, Queue<MavenDependency> dependenciesToDownload, PomContextRegistry pomContextRegistry) {
-        this.dependenciesToDownload = dependenciesToDownload;
+    public DependencyDownloadWorker(DownloadManager downloadManager, ResolutionFrontier frontier, PomContextRegistry pomContextRegistry, RepositoryClient repositoryClient, ArtifactStore artifactStore, SnapshotPolicy snapshotPolicy) {
+        this.frontier = frontier;
         this.downloadManager = downloadManager;
         this.pomContextRegistry = pomContextRegistry;
-        this.httpClient = HttpClient.newBuilder().build();
-        var factory = DocumentBuilderFactory.newInstance();
-        try {
-            this.xmlBuilder = factory.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            throw new Error(e);
-        }
+        this.repositoryClient = repositoryClient;
+        this.artifactStore = artifactStore;
+        this.snapshotPolicy = snapshotPolicy;
+        this.pomReader = new PomReader();
+        this.pomModelCache = new PomModelCache();
     }
 
     @Override
     public void run() {
-        do {
+        while (true) {
+            MavenDependency toDownload;
             try {
-                var toDownload = dependenciesToDownload.poll();
-                if (toDownload == null || toDownload.version() == null) {
-                    safeSleep();
-                    break;
-                }
+                toDownload = frontier.take();
+            } catch (InterruptedException e) {
+                // the resolution has finished, there is no more work to do
+                break;
+            }
 
-                // first find transitive dependencies and offer them to download
-                var transitiveDependencies = findTransitiveDependencies(toDownload);
+            // the slot is released once the jar is downloaded, not when this thread moves on to the next dependency
+            process(toDownload).whenComplete((ignored, e) -> frontier.release());
+        }
+    }
 
-                if (transitiveDependencies.parentDependency.isPresent()) {
-                    var parentDependency = transitiveDependencies.parentDependency.get();
-                    if (!pomContextRegistry.hasContext(pomContextRegistry.contextIdFor(parentDependency))) {
-                        downloadManager.trackTransitiveDependency(parentDependency);
-                        dependenciesToDownload.offer(toDownload);
-                        continue;
-                    }
+    // the returned future completes once the work of this dependency that needs a slot of the frontier is done
+    public CompletableFuture<Void> process(MavenDependency toDownload) {
+        try {
+            var resolution = resolve(toDownload);
+            resolution.completion().whenComplete((ignored, e) -> {
+                if (isOfflineMiss(e)) {
+                    downloadManager.missing(toDownload, artifactPath(toDownload));
+                } else if (e != null) {
+                    Log.getInstance().error("Could not download dependency", e);
+                    downloadManager.failed();
                 }
 
-                transitiveDependencies.mavenDependencies.forEach(downloadManager::trackTransitiveDependency);
+                downloadManager.completed(toDownload);
+            });
 
-                // now download the jar
-                if (shouldDownload(toDownload)) {
-                    downloadJar(toDownload);
-                }
-            } catch (Throwable e) {
-                Log.getInstance().error("Could not download dependency", e);
-                break;
-            }
-        } while (true);
+            return resolution.jar().handle((ignored, e) -> null);
+        } catch (Throwable e) {
+            Log.getInstance().error("Could not download dependency", e);
+            downloadManager.failed();
+            downloadManager.completed(toDownload);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private Resolution resolve(MavenDependency toDownload) {
+        if (toDownload.version() == null) {
+            return new Resolution(CompletableFuture.completedFuture(null), CompletableFuture.completedFuture(null));
+        }
 
-        downloadManager.finished();
+        var pom = readPom(toDownload);
+
+        // the jar does not depend on the parent POM, so it is downloaded while the parent chain is resolved
+        var jar = shouldDownload(toDownload) ? downloadJar(toDownload) : CompletableFuture.<Void>completedFuture(null);
+
+        var parent = pom.flatMap(this::parentOf);
+        if (parent.isPresent()) {
+            // a parent context can be registered while it is still being built, so this POM, already parsed, is only
+            // resolved once the parent has completed, fetching the parent right away if it was not found yet
+            downloadManager.trackParent(toDownload, parent.get());
+            var transitiveDependencies = downloadManager.whenCompleted(parent.get()).thenRun(() -> trackTransitiveDependencies(toDownload, pom.get()));
+            return new Resolution(jar, CompletableFuture.allOf(transitiveDependencies, jar));
+        }
+
+        pom.ifPresent(model -> trackTransitiveDependencies(toDownload, model));
+        return new Resolution(jar, jar);
     }
 
-    private TransitiveDependencies findTransitiveDependencies(MavenDependency mavenDependency) {
+    private Optional<PomModel> readPom(MavenDependency mavenDependency) {
         try {
-            var doc = xmlBuilder.parse(pomDownloadUrl(mavenDependency));
-            var project = doc.getDocumentElement();
-
-            Node dependenciesElement = null;
-            Node propertiesElement = null;
-            Node dependencyManagementDependencies = null;
-
-            MavenDependency parentDependency = null;
-
-            boolean hasParent = false;
-            String groupId = null, artifactId = null, version = null;
-            String parentGroupId = null, parentArtifactId = null, parentVersion = null;
-
-            var node = project.getFirstChild();
-            while (node != null) {
-                switch (node.getNodeName()) {
-                    case "dependencies" -> dependenciesElement = node;
-                    case "properties" -> propertiesElement = node;
-                    case "groupId" -> groupId = node.getTextContent();
-                    case "artifactId" -> artifactId = node.getTextContent();
-                    case "version" -> version = node.getTextContent();
-                    case "parent" -> {
-                        hasParent = true;
-                        var parentNode = ((Element) node.getChildNodes()).getFirstChild();
-                        while (parentNode != null) {
-                            switch (parentNode.getNodeName()) {
-                                case "groupId" -> parentGroupId = parentNode.getTextContent();
-                                case "artifactId" -> parentArtifactId = parentNode.getTextContent();
-                                case "version" -> parentVersion = parentNode.getTextContent();
-                            }
-
-                            parentNode = parentNode.getNextSibling();
-                        }
-                    }
-                    case "dependencyManagement" -> {
-                        var dmNode = node.getFirstChild();
-                        while (dmNode != null) {
-                            if (dmNode.getNodeName().equals("dependencies")) {
-                                dependencyManagementDependencies = dmNode;
-                                break;
-                            }
-
-                            dmNode = dmNode.getNextSibling();
-                        }
-                    }
-                }
-
-                node = node.getNextSibling();
+            return Optional.of(pomModelOf(mavenDependency));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (Throwable e) {
+            if (isOfflineMiss(e)) {
+                downloadManager.missing(mavenDependency, pomPath(mavenDependency));
+                return Optional.empty();
             }
 
-            groupId = Objects.requireNonNullElse(groupId, parentGroupId);
-            version = Objects.requireNonNullElse(version, parentVersion);
+            downloadManager.failed();
+            Log.getInstance().error("Could not download dependency %s:%s:%s POM file from %s.", e, mavenDependency.groupId(), mavenDependency.artifactId(), mavenDependency.decidedVersion(), repositoryClient.uriOf(pomPath(mavenDependency)));
+            return Optional.empty();
+        }
+    }
+
+    private Optional<MavenDependency> parentOf(PomModel pom) {
+        return pom.parent()
+                .map(parent -> new MavenDependency(parent.groupId(), parent.artifactId(), parent.version(), "pom", MavenDependency.Scope.COMPILE, "", Optional.empty()));
+    }
 
-            if (hasParent && !pomContextRegistry.hasContext(pomContextRegistry.contextIdFor(parentGroupId, parentArtifactId, parentVersion))) {
-                return new TransitiveDependencies(Optional.of(new MavenDependency(parentGroupId, parentArtifactId, parentVersion, "pom", MavenDependency.Scope.COMPILE, "", Optional.empty())), Collections.emptyList());
-            }
+    private void trackTransitiveDependencies(MavenDependency mavenDependency, PomModel pom) {
+        var hasParent = pom.parent().isPresent();
+        var parent = pom.parent().orElse(new PomModel.Parent(null, null, null));
 
-            String context;
-            if (hasParent) {
-                parentDependency = new MavenDependency(parentGroupId, parentArtifactId, parentVersion, "pom", MavenDependency.Scope.COMPILE, "", Optional.empty());
-                context = pomContextRegistry.registerFromParent(parentGroupId, parentArtifactId, parentVersion, groupId, artifactId, version);
-            } else {
-                context = pomContextRegistry.register(groupId, artifactId, version);
-            }
+        var groupId = Objects.requireNonNullElse(pom.groupId(), parent.groupId());
+        var artifactId = pom.artifactId();
+        var version = Objects.requireNonNullElse(pom.version(), parent.version());
 
-            if (propertiesElement != null) {
-                var property = propertiesElement.getFirstChild();
-                while (property != null) {
-                    if (property.getNodeType() == ELEMENT_NODE) {
-                        pomContextRegistry.addParameter(context, property.getNodeName(), property.getTextContent());
-                    }
+        // the parent has already been processed, if there is still no context it could not be resolved
+        if (hasParent && !pomContextRegistry.hasContext(pomContextRegistry.contextIdFor(parent.groupId(), parent.artifactId(), parent.version()))) {
+            Log.getInstance().warn("Could not resolve parent POM %s:%s:%s of %s:%s:%s.", parent.groupId(), parent.artifactId(), parent.version(), mavenDependency.groupId(), mavenDependency.artifactId(), mavenDependency.decidedVersion());
+            hasParent = false;
+        }
 
-                    property = property.getNextSibling();
-                }
-            }
+        String context;
+        if (hasParent) {
+            context = pomContextRegistry.registerFromParent(parent.groupId(), parent.artifactId(), parent.version(), groupId, artifactId, version, pom.properties());
+        } else {
+            context = pomContextRegistry.register(groupId, artifactId, version, pom.properties());
+        }
 
-            if (dependencyManagementDependencies != null) {
-                doForEachDependency(dependencyManagementDependencies, context, dependency -> pomContextRegistry.addVersionSuggestion(
-                        context,
-                        dependency.qualifiedName(),
-                        dependency.decidedVersion()
-                ));
+        for (var managedDependency : pom.managedDependencies()) {
+            if (isImport(managedDependency)) {
+                pomContextRegistry.importVersionSuggestions(managedVersionsOf(toMavenBOM(context, managedDependency), new HashSet<>()));
+                continue;
             }
 
-            if (dependenciesElement == null) {
-                return new TransitiveDependencies(Optional.ofNullable(parentDependency), Collections.emptyList());
+            var dependency = toMavenDependency(context, managedDependency);
+            pomContextRegistry.addVersionSuggestion(context, dependency.qualifiedName(), dependency.decidedVersion());
+        }
+
+        for (var dependency : pom.dependencies()) {
+            var transitiveDependency = toMavenDependency(context, dependency);
+            if (dependency.optional()) {
+                downloadManager.avoided(transitiveDependency, DownloadManager.AvoidedDependency.Reason.OPTIONAL);
+            } else {
+                // what the paths to this POM exclude is decided by the download manager, as it knows all of them
+                var exclusions = dependency.exclusions().stream().map(PomModel.Exclusion::qualifiedName).toList();
+                downloadManager.trackTransitiveDependency(mavenDependency, transitiveDependency.withExclusions(exclusions));
             }
+        }
+    }
+
+    public void importBom(MavenBOM bom) {
+        pomContextRegistry.pinVersions(managedVersionsOf(bom, new HashSet<>()));
+    }
 
-            List<MavenDependency> dependencies = new LinkedList<>();
-            doForEachDependency(dependenciesElement, context, dependencies::add);
+    private Map<String, String> managedVersionsOf(MavenBOM bom, Set<String> importing) {
+        if (importing.contains(bom.coordinates())) {
+            Log.getInstance().warn("BOM %s imports itself, it will be ignored.", bom.coordinates());
+            return Collections.emptyMap();
+        }
+
+        return pomContextRegistry.managedVersionsOf(bom, toFlatten -> flatten(toFlatten, importing));
+    }
 
-            return new TransitiveDependencies(Optional.ofNullable(parentDependency), dependencies);
-        } catch (FileNotFoundException e) {
-            return new TransitiveDependencies(Optional.empty(), Collections.emptyList());
+    private Map<String, String> flatten(MavenBOM bom, Set<String> importing) {
+        importing.add(bom.coordinates());
+
+        var managedVersions = new HashMap<String, String>();
+        try {
+            collectManagedVersions(bom.toPomDependency(), managedVersions, importing);
         } catch (Throwable e) {
-            Log.getInstance().error("Could not download dependency %s:%s:%s POM file from %s.", e, mavenDependency.groupId(), mavenDependency.artifactId(), mavenDependency.decidedVersion(), pomDownloadUrl(mavenDependency));
-            return new TransitiveDependencies(Optional.empty(), Collections.emptyList());
+            if (isOfflineMiss(e)) {
+                downloadManager.missing(bom.toPomDependency(), pomPath(bom.toPomDependency()));
+            } else {
+                downloadManager.failed();
+                Log.getInstance().error("Could not import BOM %s from %s.", e, bom.coordinates(), repositoryClient.uriOf(pomPath(bom.toPomDependency())));
+            }
         }
+
+        importing.remove(bom.coordinates());
+        return managedVersions;
     }
 
-    private void doForEachDependency(Node dependenciesElement, String context, Consumer<MavenDependency> consumer) {
-        var dependency = dependenciesElement.getFirstChild();
-        while (dependency != null) {
-            if (!dependency.getNodeName().equals("dependency")) {
-                dependency = dependency.getNextSibling();
+    // the managed versions of the parents come first, so the POM can override them, and the imported BOMs only add what is missing
+    private void collectManagedVersions(MavenDependency pomDependency, Map<String, String> managedVersions, Set<String> importing) throws IOException, XMLStreamException {
+        var pom = pomModelOf(pomDependency);
+        var parent = pom.parent();
+
+        var groupId = parent.isPresent() ? Objects.requireNonNullElse(pom.groupId(), parent.get().groupId()) : pom.groupId();
+        var version = parent.isPresent() ? Objects.requireNonNullElse(pom.version(), parent.get().version()) : pom.version();
+
+        String context;
+        if (parent.isPresent()) {
+            var parentPom = parent.get();
+            collectManagedVersions(new MavenDependency(parentPom.groupId(), parentPom.artifactId(), parentPom.version(), "pom", MavenDependency.Scope.IMPORT, "", Optional.empty()), managedVersions, importing);
+            context = pomContextRegistry.registerFromParent(parentPom.groupId(), parentPom.artifactId(), parentPom.version(), groupId, pom.artifactId(), version, pom.properties());
+        } else {
+            context = pomContextRegistry.register(groupId, pom.artifactId(), version, pom.properties());
+        }
+
+        var imports = new ArrayList<MavenBOM>();
+        for (var managedDependency : pom.managedDependencies()) {
+            if (isImport(managedDependency)) {
+                imports.add(toMavenBOM(context, managedDependency));
                 continue;
             }
 
-            String depGroupId = null, depArtifactId = null, depVersion = null;
-            MavenDependency.Scope scope = MavenDependency.Scope.RUNTIME;
-            Optional<String> classifier = Optional.empty();
-
-            for (var j = 0; j < dependency.getChildNodes().getLength(); j++) {
-                var dependencyAttr = dependency.getChildNodes().item(j);
-                switch (dependencyAttr.getNodeName()) {
-                    case "groupId" -> depGroupId = dependencyAttr.getTextContent();
-                    case "artifactId" -> depArtifactId = dependencyAttr.getTextContent();
-                    case "version" -> depVersion = dependencyAttr.getTextContent();
-                    case "scope" -> scope = MavenDependency.Scope.valueOf(dependencyAttr.getTextContent().trim().toUpperCase());
-                    case "classifier" -> classifier = Optional.of(dependencyAttr.getTextContent());
-                }
-            }
+            var dependency = toMavenDependency(context, managedDependency);
+            managedVersions.put(dependency.qualifiedName(), dependency.decidedVersion());
+        }
 
-            consumer.accept(
-                    new MavenDependency(
-                            pomContextRegistry.resolveExpression(context, depGroupId),
-                            pomContextRegistry.resolveExpression(context, depArtifactId),
-                            pomContextRegistry.resolveExpression(context, depVersion),
-                            "jar",
-                            scope,
-                            "jar",
-                            classifier
-                    )
-            );
-
-            dependency = dependency.getNextSibling();
+        for (var imported : imports) {
+            managedVersionsOf(imported, importing).forEach(managedVersions::putIfAbsent);
         }
     }
 
-    private void downloadJar(MavenDependency dependency) {
-        try {
-            var whereToDownload = downloadManager.downloadPathOfDependency(dependency);
-            var folder = whereToDownload.getParent();
-            Files.createDirectories(folder);
-
-            Timing.getInstance().start(dependency.toString());
-            httpClient.send(
-                    HttpRequest.newBuilder()
-                            .GET()
-                            .uri(
-                                    URI.create(downloadUrl(dependency))
-                            ).build(),
-                    HttpResponse.BodyHandlers.ofFile(whereToDownload)
-            );
-            var downloadDuration = Timing.getInstance().end(dependency.toString());
+    private static boolean isImport(PomModel.Dependency dependency) {
+        return "import".equalsIgnoreCase(dependency.scope());
+    }
 
+    private MavenBOM toMavenBOM(String context, PomModel.Dependency dependency) {
+        return new MavenBOM(
+                pomContextRegistry.resolveExpression(context, dependency.groupId()),
+                pomContextRegistry.resolveExpression(context, dependency.artifactId()),
+                pomContextRegistry.resolveExpression(context, dependency.version()),
+                MavenBOM.Scope.IMPORT
+        );
+    }
+
+    private MavenDependency toMavenDependency(String context, PomModel.Dependency dependency) {
+        return new MavenDependency(
+                pomContextRegistry.resolveExpression(context, dependency.groupId()),
+                pomContextRegistry.resolveExpression(context, dependency.artifactId()),
+                pomContextRegistry.resolveExpression(context, dependency.version()),
+                "jar",
+                dependency.scope() == null ? MavenDependency.Scope.RUNTIME : MavenDependency.Scope.valueOf(dependency.scope().toUpperCase()),
+                "jar",
+                Optional.ofNullable(dependency.classifier())
+        );
+    }
+
+    private CompletableFuture<Void> downloadJar(MavenDependency dependency) {
+        if (dependency.isSnapshot()) {
+            return downloadSnapshot(dependency);
+        }
+
+        var whereToDownload = downloadManager.downloadPathOfDependency(dependency);
+        var timingId = dependency.toString();
+
+        Timing.getInstance().start(timingId);
+        return fetch(dependency, artifactPath(dependency), whereToDownload).thenAccept(ignored -> {
+            var downloadDuration = Timing.getInstance().end(timingId);
             Log.getInstance().info("Downloaded %s:%s:%s:%s for %s in %s.", dependency.groupId(), dependency.artifactId(), dependency.decidedVersion(), dependency.qualifier(), dependency.scope().reason(), downloadDuration);
+        });
+    }
 
-        } catch (Throwable e) {
-            throw new RuntimeException(e);
+    private CompletableFuture<Void> downloadSnapshot(MavenDependency dependency) {
+        var whereToDownload = downloadManager.downloadPathOfDependency(dependency);
+        var metadata = Files.exists(whereToDownload) ? SnapshotMetadata.read(whereToDownload) : Optional.<SnapshotMetadata>empty();
+        var now = Instant.now();
+
+        if (metadata.isPresent() && !snapshotPolicy.isDue(metadata.get().checkedAt(), now)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // while offline, the snapshot in the local cache is used even if it is due to be checked
+        if (repositoryClient.isOffline() && Files.exists(whereToDownload)) {
+            return CompletableFuture.completedFuture(null);
         }
+
+        var timingId = dependency.toString();
+        Timing.getInstance().start(timingId);
+        return repositoryClient.download(artifactPath(dependency), whereToDownload, metadata.map(SnapshotMetadata::validators)).thenAccept(fetched -> {
+            SnapshotMetadata.of(fetched.validators(), now).write(whereToDownload);
+
+            var downloadDuration = Timing.getInstance().end(timingId);
+            if (fetched.modified()) {
+                Log.getInstance().info("Downloaded %s:%s:%s:%s for %s in %s.", dependency.groupId(), dependency.artifactId(), dependency.decidedVersion(), dependency.qualifier(), dependency.scope().reason(), downloadDuration);
+            } else {
+                Log.getInstance().info("Revalidated %s:%s:%s:%s in %s, it did not change.", dependency.groupId(), dependency.artifactId(), dependency.decidedVersion(), dependency.qualifier(), downloadDuration);
+            }
+        });
     }
 
-    private String downloadUrl(MavenDependency dependency) {
-        return "https://repo1.maven.org/maven2/%s/%s/%s/%s".formatted(
+    static String artifactPath(MavenDependency dependency) {
+        return "%s/%s/%s/%s".formatted(
                 dependency.groupId().replaceAll("\\.", "/"),
                 dependency.artifactId(),
                 dependency.decidedVersion(),
@@ -263,40 +323,57 @@ public final class DependencyDownloadWorker implements Runnable {
         );
     }
 
-    private String pomDownloadUrl(MavenDependency dependency) {
+    private String pomPath(MavenDependency dependency) {
+        return "%s/%s/%s/%s".formatted(
+                dependency.groupId().replaceAll("\\.", "/"),
+                dependency.artifactId(),
+                dependency.decidedVersion(),
+                "%s-%s%s.pom".formatted(dependency.artifactId(), dependency.decidedVersion(), dependency.classifier().map(e -> "-" + e).orElse(""))
+        );
+    }
+
+    private PomModel pomModelOf(MavenDependency dependency) throws IOException, XMLStreamException {
+        var pomPath = pomPathOf(dependency);
+        var cached = pomModelCache.read(pomPath);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        var pom = pomReader.read(pomPath);
+        pomModelCache.write(pomPath, pom);
+        return pom;
+    }
+
+    private Path pomPathOf(MavenDependency dependency) {
         var pathOfPom = downloadManager.downloadPathOfPOM(dependency);
-        if (pathOfPom.toFile().exists()) {
+        if (!pathOfPom.toFile().exists()) {
             try {
-                return pathOfPom.toUri().toURL().toString();
-            } catch (MalformedURLException e) {
-                throw new RuntimeException(e);
+                fetch(dependency, pomPath(dependency), pathOfPom).join();
+            } catch (CompletionException e) {
+                throw new RuntimeException(e.getCause());
             }
-        } else {
-            String externalUrlOfPom = "https://repo1.maven.org/maven2/%s/%s/%s/%s".formatted(
-                    dependency.groupId().replaceAll("\\.", "/"),
-                    dependency.artifactId(),
-                    dependency.decidedVersion(),
-                    "%s-%s%s.pom".formatted(dependency.artifactId(), dependency.decidedVersion(), dependency.classifier().map(e -> "-" + e).orElse(""))
-            );
+        }
 
-            try {
-                var folder = pathOfPom.getParent();
-                Files.createDirectories(folder);
-
-                httpClient.send(
-                        HttpRequest.newBuilder()
-                                .GET()
-                                .uri(
-                                        URI.create(externalUrlOfPom)
-                                ).build(),
-                        HttpResponse.BodyHandlers.ofFile(pathOfPom)
-                );
-
-                return pathOfPom.toUri().toURL().toString();
-            } catch (Throwable e) {
-                throw new RuntimeException(e);
+        return pathOfPom;
+    }
+
+    private CompletableFuture<Path> fetch(MavenDependency dependency, String relativePath, Path target) {
+        // snapshots change under the same path, so they are never shared through the store
+        if (dependency.isSnapshot()) {
+            return repositoryClient.download(relativePath, target);
+        }
+
+        return artifactStore.fetch(relativePath, target, path -> repositoryClient.download(relativePath, path));
+    }
+
+    private static boolean isOfflineMiss(Throwable error) {
+        for (var cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RepositoryException repositoryException && repositoryException.isOffline()) {
+                return true;
             }
         }
+
+        return false;
     }
 
     private boolean shouldDownload(MavenDependency dependency) {
@@ -310,12 +387,4 @@ public final class DependencyDownloadWorker implements Runnable {
 
         return !downloadManager.downloadPathOfDependency(dependency).toFile().exists();
     }
-
-    private void safeSleep() {
-        try {
-            Thread.sleep(1);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
-    }
 }
@@ -0,0 +1,19 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies;
+
+import java.io.Serial;
+
+// the dependency graph could not be resolved, the message explains why to the user
+public abstract class DependencyResolutionException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    protected DependencyResolutionException(String message) {
+        super(message);
+    }
+}
@@ -7,64 +7,267 @@
 package cat.pottery.engine.dependencies;
 
 import cat.pottery.engine.dependencies.maven.DownloadedDependency;
+import cat.pottery.engine.dependencies.maven.MavenBOM;
 import cat.pottery.engine.dependencies.maven.MavenDependency;
+import cat.pottery.engine.dependencies.repository.HostPermits;
+import cat.pottery.engine.dependencies.repository.RepositoryClient;
+import cat.pottery.engine.dependencies.store.ArtifactStore;
+import cat.pottery.engine.integrations.IDEAImlGenerator;
 import cat.pottery.telemetry.Log;
 import cat.pottery.ui.artifact.ArtifactDocument;
+import cat.pottery.ui.artifact.Dependency;
+import cat.pottery.ui.artifact.Resolver;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.Queue;
-import java.util.concurrent.ExecutionException;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class DependencyResolver {
     private final DownloadManager downloadManager;
-    private final Queue<MavenDependency> queue;
-    private final int workerCount;
-    private final Thread[] workers;
+    private final ResolutionFrontier frontier;
+    private final Resolver settings;
+    private final List<Thread> workers;
     private final PomContextRegistry pomContextRegistry;
+    private final ResolvedGraphLock resolvedGraphLock;
 
-    public DependencyResolver(DownloadManager downloadManager, Queue<MavenDependency> queue, int workerCount, PomContextRegistry pomContextRegistry) {
+    public DependencyResolver(DownloadManager downloadManager, ResolutionFrontier frontier, Resolver settings, PomContextRegistry pomContextRegistry, ResolvedGraphLock resolvedGraphLock) {
         this.downloadManager = downloadManager;
-        this.queue = queue;
-        this.workerCount = workerCount;
+        this.frontier = frontier;
+        this.settings = settings;
         this.pomContextRegistry = pomContextRegistry;
-        this.workers = new Thread[this.workerCount];
+        this.resolvedGraphLock = resolvedGraphLock;
+        this.workers = new ArrayList<>(settings.concurrency());
+    }
+
+    // the graph of the test scope also contains the test dependencies, and it is locked separately
+    public static DependencyResolver forScope(Resolver settings, boolean testScope) {
+        // a dependency in flight waits for its POM, so a few more than the concurrent downloads keep the connections busy
+        var frontier = new ResolutionFrontier(settings.concurrency() * 4);
+        var pomContextRegistry = new PomContextRegistry(new ConcurrentHashMap<>(32, 1.2f, 4), new ConcurrentHashMap<>(32, 1.2f, 4));
+        var manager = new DownloadManager(frontier, new ConcurrentHashMap<>(32, 1.2f, 4), testScope, pomContextRegistry, ConflictStrategy.of(settings.conflicts()));
+
+        return new DependencyResolver(manager, frontier, settings, pomContextRegistry, ResolvedGraphLock.forScope(testScope));
     }
 
     public List<DownloadedDependency> downloadDependenciesOfArtifact(ArtifactDocument artifact) {
-        artifact.resolvedDependencies().stream().map(dependency -> {
-            var info = dependency.qualifiedName().split(":");
-            return new MavenDependency(info[0], info[1], info[2], "jar", dependency.scope().toMavenScope(), "jar", Optional.empty());
-        }).forEach(downloadManager::trackDependency);
+        var dependencies = fetchDependenciesOfArtifact(artifact);
+        IDEAImlGenerator.getInstance().generateImlFileIfNecessary(dependencies);
+        return dependencies;
+    }
 
-        for (var i = 0; i < workerCount; i++) {
-            this.workers[i] = new Thread(new DependencyDownloadWorker(downloadManager, queue, pomContextRegistry));
-            this.workers[i].setName("dependency-download-worker-" + i);
-            this.workers[i].setUncaughtExceptionHandler((t, ex) -> {
-                Log.getInstance().error("Uncaught Exception in thread %s.", ex, t.getName());
-            });
-            this.workers[i].start();
+    // does not update the IDEA module, for the callers that resolve several scopes at the same time and write it once
+    public List<DownloadedDependency> fetchDependenciesOfArtifact(ArtifactDocument artifact) {
+        var fingerprint = resolvedGraphLock.fingerprintOf(artifact);
+        var lockedGraph = resolvedGraphLock.read(fingerprint);
+        if (lockedGraph.isPresent()) {
+            return lockedGraph.get();
+        }
+
+        var resolvedGraph = resolveDependenciesOfArtifact(artifact);
+        if (!downloadManager.hasFailures()) {
+            resolvedGraphLock.write(fingerprint, resolvedGraph);
         }
 
-        return waitUntilFinishedDownloading();
+        return resolvedGraph;
     }
 
-    private List<DownloadedDependency> waitUntilFinishedDownloading() {
-        var downloadedDeps = downloadManager.downloadedDependencies();
-        do {
+    private List<DownloadedDependency> resolveDependenciesOfArtifact(ArtifactDocument artifact) {
+        var artifactStore = ArtifactStore.fromEnvironment();
+        try (var repositoryClient = new RepositoryClient(settings.repositories(), new HostPermits(settings.concurrency()), settings.offline())) {
+            // BOMs are imported before anything else, so they can decide the versions of the direct dependencies too
+            importBomsOf(artifact, new DependencyDownloadWorker(downloadManager, frontier, pomContextRegistry, repositoryClient, artifactStore, settings.snapshots()));
+            trackDependenciesOf(artifact);
+
+            switch (settings.mode()) {
+                case PLATFORM -> startPlatformWorkers(repositoryClient, artifactStore);
+                case VIRTUAL -> startVirtualDispatcher(repositoryClient, artifactStore);
+            }
+
+            downloadManager.seeded();
+
             try {
-                return downloadedDeps.get();
-            } catch (Throwable e) {
-                safeSleep();
+                var downloadedDependencies = downloadManager.downloadedDependencies().join();
+                var missingDependencies = downloadManager.missingDependencies();
+                if (!missingDependencies.isEmpty()) {
+                    throw new MissingDependenciesException(missingDependencies);
+                }
+
+                logAvoidedDependencies(artifactStore);
+                return downloadedDependencies;
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof DependencyResolutionException resolutionException) {
+                    throw resolutionException;
+                }
+
+                throw e;
+            } finally {
+                workers.forEach(Thread::interrupt);
+                logStatisticsOf(repositoryClient);
+                logStatisticsOf(artifactStore);
             }
-        } while (true);
+        }
     }
 
-    private void safeSleep() {
-        try {
-            Thread.sleep(5);
-        } catch (InterruptedException e) {
+    private void importBomsOf(ArtifactDocument artifact, DependencyDownloadWorker worker) {
+        for (var dependency : artifact.resolvedDependencies()) {
+            if (dependency.scope() != Dependency.Scope.BOM) {
+                continue;
+            }
+
+            var info = dependency.qualifiedName().split(":");
+            if (info.length != 3) {
+                Log.getInstance().error("BOM %s must be declared as group:artifact:version.", dependency.qualifiedName());
+                downloadManager.failed();
+                continue;
+            }
+
+            worker.importBom(new MavenBOM(info[0], info[1], info[2], MavenBOM.Scope.IMPORT));
+        }
+    }
+
+    private void trackDependenciesOf(ArtifactDocument artifact) {
+        for (var dependency : artifact.resolvedDependencies()) {
+            if (dependency.scope() == Dependency.Scope.BOM) {
+                continue;
+            }
+
+            // the version can be left out when a BOM manages it
+            var info = dependency.qualifiedName().split(":");
+            var mavenDependency = new MavenDependency(info[0], info[1], info.length > 2 ? info[2] : null, "jar", dependency.scope().toMavenScope(), "jar", Optional.empty(), Set.copyOf(dependency.exclusions()));
+            if (mavenDependency.isNotVersioned() && pomContextRegistry.resolveDefaultVersion(mavenDependency.qualifiedName()) == null) {
+                Log.getInstance().error("Dependency %s has no version, and no BOM manages it.", dependency.qualifiedName());
+                downloadManager.failed();
+                continue;
+            }
+
+            downloadManager.trackDependency(mavenDependency);
+        }
+    }
 
+    private void logAvoidedDependencies(ArtifactStore artifactStore) {
+        var avoidedDependencies = downloadManager.avoidedDependencies();
+        if (avoidedDependencies.isEmpty()) {
+            return;
         }
+
+        var excluded = 0;
+        var knownSizes = 0;
+        var bytes = 0L;
+        for (var avoided : avoidedDependencies) {
+            var dependency = avoided.dependency();
+            if (avoided.reason() == DownloadManager.AvoidedDependency.Reason.EXCLUDED) {
+                excluded++;
+            }
+
+            Log.getInstance().info("Skipped %s %s:%s.", avoided.reason() == DownloadManager.AvoidedDependency.Reason.EXCLUDED ? "excluded" : "optional", dependency.qualifiedName(), dependency.isNotVersioned() ? "?" : dependency.decidedVersion());
+
+            // only the artifact store knows how big an artifact is without downloading it
+            var size = dependency.isNotVersioned() ? Optional.<Long>empty() : artifactStore.sizeOf(DependencyDownloadWorker.artifactPath(dependency));
+            if (size.isPresent()) {
+                knownSizes++;
+                bytes += size.get();
+            }
+        }
+
+        Log.getInstance().info("Skipped %d dependencies (%d excluded, %d optional) and their own dependencies, %d KiB avoided for the %d of them found in the artifact store.",
+                avoidedDependencies.size(),
+                excluded,
+                avoidedDependencies.size() - excluded,
+                bytes / 1024,
+                knownSizes
+        );
+    }
+
+    private void logStatisticsOf(RepositoryClient repositoryClient) {
+        var statistics = repositoryClient.statistics();
+        if (statistics.requests() == 0) {
+            return;
+        }
+
+        Log.getInstance().info("Fetched %d files (%d failed, %d resumed, %d with a wrong checksum, %d not modified), %d over HTTP/2 to %d origins, %d over HTTP/1.1, with up to %d requests in flight.",
+                statistics.requests(),
+                statistics.failedRequests(),
+                statistics.resumedDownloads(),
+                statistics.checksumMismatches(),
+                statistics.notModified(),
+                statistics.http2Requests(),
+                statistics.http2Origins(),
+                statistics.http11Requests(),
+                statistics.peakRequestsInFlight()
+        );
+
+        for (var host : statistics.hosts()) {
+            Log.getInstance().info("Host %s: %d requests at %.1f per second, ended with %d concurrent requests (adapted between %d and %d), overloaded %d times.",
+                    host.host(),
+                    host.requests(),
+                    host.requestsPerSecond(),
+                    host.limit(),
+                    host.lowestLimit(),
+                    host.highestLimit(),
+                    host.overloads()
+            );
+        }
+
+        if (statistics.repositories().size() > 1) {
+            for (var repository : statistics.repositories()) {
+                Log.getInstance().info("Repository %s: %d requests, %d not found, %d errors, %d ms of latency.",
+                        repository.uri(),
+                        repository.requests(),
+                        repository.notFound(),
+                        repository.errors(),
+                        repository.latencyMillis()
+                );
+            }
+        }
+    }
+
+    private void logStatisticsOf(ArtifactStore artifactStore) {
+        var statistics = artifactStore.statistics();
+        if (statistics.reused() == 0 && statistics.stored() == 0) {
+            return;
+        }
+
+        Log.getInstance().info("Reused %d files from the artifact store at %s (%d copied instead of linked), added %d new files.",
+                statistics.reused(),
+                artifactStore.root(),
+                statistics.copies(),
+                statistics.stored()
+        );
+    }
+
+    private void startPlatformWorkers(RepositoryClient repositoryClient, ArtifactStore artifactStore) {
+        for (var i = 0; i < settings.concurrency(); i++) {
+            var worker = new Thread(new DependencyDownloadWorker(downloadManager, frontier, pomContextRegistry, repositoryClient, artifactStore, settings.snapshots()));
+            worker.setName("dependency-download-worker-" + i);
+            worker.setUncaughtExceptionHandler((t, ex) -> {
+                Log.getInstance().error("Uncaught Exception in thread %s.", ex, t.getName());
+            });
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    private void startVirtualDispatcher(RepositoryClient repositoryClient, ArtifactStore artifactStore) {
+        // a single worker is shared by all virtual threads, each dependency is processed in its own thread
+        var worker = new DependencyDownloadWorker(downloadManager, frontier, pomContextRegistry, repositoryClient, artifactStore, settings.snapshots());
+        var downloadThreads = Thread.ofVirtual().name("dependency-download-", 0);
+
+        var dispatcher = Thread.ofVirtual().name("dependency-download-dispatcher").unstarted(() -> {
+            while (true) {
+                try {
+                    var toDownload = frontier.take();
+                    // the slot is held until the jar is downloaded, so the downloads in flight are bounded too
+                    downloadThreads.start(() -> worker.process(toDownload).whenComplete((ignored, e) -> frontier.release()));
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        });
+
+        dispatcher.start();
+        workers.add(dispatcher);
     }
 }
@@ -8,29 +8,60 @@ package cat.pottery.engine.dependencies;
 
 import cat.pottery.engine.dependencies.maven.DownloadedDependency;
 import cat.pottery.engine.dependencies.maven.MavenDependency;
-import cat.pottery.engine.integrations.IDEAImlGenerator;
 import cat.pottery.telemetry.Log;
 
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public final class DownloadManager {
-    private final Queue<MavenDependency> dependenciesToDownload;
+    public record AvoidedDependency(MavenDependency dependency, Reason reason) {
+        public enum Reason {
+            EXCLUDED, OPTIONAL
+        }
+    }
+
+    private final ResolutionFrontier frontier;
     private final Map<String, Set<MavenDependency>> foundVersionsPerArtifact;
-    private final int expectFinishingCount;
-    private final AtomicInteger finishCount;
+    private final Map<String, CompletableFuture<Void>> completionPerDependency;
+    private final Map<String, Integer> depthPerCoordinates;
+    // the dependencies declared by the POM of every coordinates, with the exclusions of their own declaration only
+    private final Map<String, Set<MavenDependency>> dependenciesPerCoordinates;
+    // the exclusions of every coordinates are the ones shared by all the paths found to them
+    private final Map<String, MavenDependency> trackedPerCoordinates;
+    private final Map<String, AvoidedDependency> avoidedDependencies;
+    private final Set<String> missingDependencies;
+    private final AtomicInteger pendingTasks;
+    private final CompletableFuture<Void> resolution;
+    private final AtomicBoolean hasFailures;
     private final boolean downloadTestDependencies;
     private final PomContextRegistry pomContextRegistry;
+    private final ConflictStrategy conflictStrategy;
+    private final Path localRepository;
 
-    public DownloadManager(Queue<MavenDependency> dependenciesToDownload, Map<String, Set<MavenDependency>> foundVersionsPerArtifact, int expectFinishingCount, boolean downloadTestDependencies, PomContextRegistry pomContextRegistry) {
-        this.dependenciesToDownload = dependenciesToDownload;
+    public DownloadManager(ResolutionFrontier frontier, Map<String, Set<MavenDependency>> foundVersionsPerArtifact, boolean downloadTestDependencies, PomContextRegistry pomContextRegistry, ConflictStrategy conflictStrategy) {
+        this(frontier, foundVersionsPerArtifact, downloadTestDependencies, pomContextRegistry, conflictStrategy, Path.of(".pottery", "m2"));
+    }
+
+    public DownloadManager(ResolutionFrontier frontier, Map<String, Set<MavenDependency>> foundVersionsPerArtifact, boolean downloadTestDependencies, PomContextRegistry pomContextRegistry, ConflictStrategy conflictStrategy, Path localRepository) {
+        this.frontier = frontier;
+        this.localRepository = localRepository;
         this.foundVersionsPerArtifact = foundVersionsPerArtifact;
-        this.expectFinishingCount = expectFinishingCount;
         this.pomContextRegistry = pomContextRegistry;
-        this.finishCount = new AtomicInteger(0);
+        this.conflictStrategy = conflictStrategy;
+        this.completionPerDependency = new ConcurrentHashMap<>();
+        this.depthPerCoordinates = new ConcurrentHashMap<>();
+        this.dependenciesPerCoordinates = new HashMap<>();
+        this.trackedPerCoordinates = new HashMap<>();
+        this.avoidedDependencies = new ConcurrentHashMap<>();
+        this.missingDependencies = ConcurrentHashMap.newKeySet();
+        // the initial task is the seeding of the direct dependencies, released by seeded()
+        this.pendingTasks = new AtomicInteger(1);
+        this.resolution = new CompletableFuture<>();
+        this.hasFailures = new AtomicBoolean(false);
         this.downloadTestDependencies = downloadTestDependencies;
     }
 
@@ -39,85 +70,190 @@ public final class DownloadManager {
             return;
         }
 
-        markDependencyToDownload(dependency);
+        markDependencyToDownload(dependency, 0);
     }
 
-    public void trackTransitiveDependency(MavenDependency dependency) {
+    // the dependency carries the exclusions of its own declaration, the ones of the paths to the dependent are added here
+    public synchronized void trackTransitiveDependency(MavenDependency dependent, MavenDependency dependency) {
         if (dependency.scope() == MavenDependency.Scope.TEST) {
             return;
         }
 
-        markDependencyToDownload(dependency);
+        var dependentCoordinates = coordinatesOf(dependent);
+        dependenciesPerCoordinates.computeIfAbsent(dependentCoordinates, k -> new HashSet<>()).add(dependency);
+        follow(dependentCoordinates, dependency);
+    }
+
+    // a parent POM is needed to resolve its child, whatever the child excludes
+    public void trackParent(MavenDependency dependent, MavenDependency parent) {
+        markDependencyToDownload(parent, depthOf(dependent) + 1);
+    }
+
+    private void follow(String dependentCoordinates, MavenDependency dependency) {
+        var dependent = trackedPerCoordinates.get(dependentCoordinates);
+        if (dependent.excludes(dependency)) {
+            avoided(dependency, AvoidedDependency.Reason.EXCLUDED);
+            return;
+        }
+
+        markDependencyToDownload(dependency.withExclusions(dependent.exclusions()), depthPerCoordinates.get(dependentCoordinates) + 1);
     }
 
-    private void markDependencyToDownload(MavenDependency dependency) {
+    // dependencies are found concurrently, and the same graph must choose the same versions however it was walked, so
+    // the state of a dependency only depends on every path found to it, not on which one was found first
+    private synchronized void markDependencyToDownload(MavenDependency dependency, int depth) {
         var qname = dependency.qualifiedName();
-        var versionsOfDep = foundVersionsPerArtifact.getOrDefault(qname, new HashSet<>());
+        // like the dependencyManagement of a root POM, the BOMs of the pottery.yaml also decide the version of transitive dependencies, but not of parent POMs
+        var pinnedVersion = depth > 0 && !dependency.type().equals("pom") ? pomContextRegistry.pinnedVersionOf(qname) : Optional.<String>empty();
+        var toDownload = pinnedVersion.map(dependency::withVersion).orElseGet(() -> dependency.withVersionIfUnspecified(pomContextRegistry.resolveDefaultVersion(qname)));
+        if (toDownload.isNotVersioned()) {
+            return;
+        }
 
-        if (versionsOfDep.stream().noneMatch(e -> e.decidedVersion().equals(dependency.version()))) {
-            if (!versionsOfDep.isEmpty()) {
-                if (versionsOfDep.size() > 1 || !versionsOfDep.stream().toList().get(0).decidedVersion().equals(dependency.decidedVersion())) {
-                    // warning!
-                    Log.getInstance().warn("Using multiple versions of %s:%s", dependency.groupId(), dependency.artifactId());
-                }
-            }
+        var coordinates = coordinatesOf(toDownload);
+        var tracked = trackedPerCoordinates.get(coordinates);
+        if (tracked == null) {
+            trackedPerCoordinates.put(coordinates, toDownload);
+            depthPerCoordinates.put(coordinates, depth);
+            completionPerDependency.put(coordinates, new CompletableFuture<>());
+            foundVersionsPerArtifact.computeIfAbsent(qname, k -> ConcurrentHashMap.newKeySet()).add(toDownload);
+            pendingTasks.incrementAndGet();
+            frontier.push(toDownload);
+            return;
+        }
+
+        // the depth is the shortest path found, and a dependency is only excluded when every path excludes it, so when
+        // a shorter or less excluding path shows up, the dependencies already found below are followed again
+        var changed = false;
+        if (depth < depthPerCoordinates.get(coordinates)) {
+            depthPerCoordinates.put(coordinates, depth);
+            changed = true;
+        }
+
+        if (!toDownload.exclusions().containsAll(tracked.exclusions())) {
+            trackedPerCoordinates.put(coordinates, tracked.withExclusionsSharedWith(toDownload.exclusions()));
+            changed = true;
+        }
 
-            var defaultVersion = pomContextRegistry.resolveDefaultVersion(qname);
-            var toDownload = dependency.withVersionIfUnspecified(defaultVersion);
-            if (toDownload.isNotVersioned()) {
-                return;
+        if (changed) {
+            for (var transitiveDependency : dependenciesPerCoordinates.getOrDefault(coordinates, Set.of())) {
+                follow(coordinates, transitiveDependency);
             }
+        }
+    }
 
-            dependenciesToDownload.offer(toDownload);
-            versionsOfDep.add(toDownload);
-            foundVersionsPerArtifact.put(qname, versionsOfDep);
+    public void avoided(MavenDependency dependency, AvoidedDependency.Reason reason) {
+        if (dependency.scope() == MavenDependency.Scope.TEST) {
+            return;
         }
+
+        var avoided = dependency.withVersionIfUnspecified(pomContextRegistry.resolveDefaultVersion(dependency.qualifiedName()));
+        avoidedDependencies.putIfAbsent(avoided.qualifiedName(), new AvoidedDependency(avoided, reason));
     }
 
-    public void finished() {
-        this.finishCount.incrementAndGet();
+    // a dependency can be excluded from one path and still be required by another one
+    public List<AvoidedDependency> avoidedDependencies() {
+        return avoidedDependencies.values().stream()
+                .filter(avoided -> !foundVersionsPerArtifact.containsKey(avoided.dependency().qualifiedName()))
+                .toList();
     }
 
-    public Future<List<DownloadedDependency>> downloadedDependencies() {
-        return CompletableFuture.supplyAsync(() -> {
-            while (this.finishCount.get() < this.expectFinishingCount) {
+    private int depthOf(MavenDependency dependency) {
+        return depthPerCoordinates.getOrDefault(coordinatesOf(dependency), 0);
+    }
+
+    public void seeded() {
+        releaseTask();
+    }
+
+    public void completed(MavenDependency dependency) {
+        var completion = completionPerDependency.get(coordinatesOf(dependency));
+        if (completion != null) {
+            completion.complete(null);
+        }
+
+        releaseTask();
+    }
+
+    private void releaseTask() {
+        if (pendingTasks.decrementAndGet() == 0) {
+            resolution.complete(null);
+        }
+    }
+
+    public CompletableFuture<Void> whenCompleted(MavenDependency dependency) {
+        return completionPerDependency.getOrDefault(coordinatesOf(dependency), CompletableFuture.completedFuture(null));
+    }
+
+    private String coordinatesOf(MavenDependency dependency) {
+        return dependency.qualifiedName() + ":" + dependency.decidedVersion();
+    }
+
+    public void failed() {
+        this.hasFailures.set(true);
+    }
+
+    public boolean hasFailures() {
+        return hasFailures.get();
+    }
+
+    // only used while offline, for the files that are not in the local cache
+    public void missing(MavenDependency dependency, String file) {
+        missingDependencies.add("%s:%s (%s)".formatted(dependency.qualifiedName(), dependency.decidedVersion(), file));
+        failed();
+    }
+
+    public List<String> missingDependencies() {
+        return missingDependencies.stream().sorted().toList();
+    }
+
+    public CompletableFuture<List<DownloadedDependency>> downloadedDependencies() {
+        return resolution.thenApply(ignored -> {
+            var allDependencies = new ArrayList<DownloadedDependency>(foundVersionsPerArtifact.size());
+            var conflicts = new ArrayList<String>();
+
+            for (var entry : foundVersionsPerArtifact.entrySet()) {
+                var candidates = new ArrayList<ConflictStrategy.Candidate>(entry.getValue().size());
+                for (var dependency : entry.getValue()) {
+                    candidates.add(new ConflictStrategy.Candidate(dependency, depthOf(dependency)));
+                }
+
                 try {
-                    Thread.sleep(5);
-                } catch (InterruptedException e) {
+                    var chosen = conflictStrategy.choose(entry.getKey(), candidates);
+                    if (candidates.stream().anyMatch(candidate -> candidate.conflictsWith(chosen))) {
+                        Log.getInstance().warn("Found %s, using %s.", ConflictStrategy.describe(entry.getKey(), candidates), chosen.decidedVersion());
+                    }
+
+                    allDependencies.add(new DownloadedDependency(chosen, downloadPathOfDependency(chosen)));
+                } catch (DependencyConflictException e) {
+                    conflicts.addAll(e.conflicts());
                 }
             }
 
-            var allDependencies = foundVersionsPerArtifact.values()
-                    .stream()
-                    .map(deps -> deps.stream().reduce(MavenDependency::max))
-                    .map(Optional::get)
-                    .map(dep -> new DownloadedDependency(dep, downloadPathOfDependency(dep)))
-                    .toList();
+            if (!conflicts.isEmpty()) {
+                conflicts.sort(Comparator.naturalOrder());
+                throw new DependencyConflictException(conflicts);
+            }
 
-            IDEAImlGenerator.getInstance().generateImlFileIfNecessary(allDependencies);
             return allDependencies;
         });
     }
 
     public Path downloadPathOfDependency(MavenDependency dependency) {
-        return Path.of(
-                ".pottery",
-                "m2",
+        return localRepository.resolve(Path.of(
                 dependency.groupId(),
                 dependency.artifactId(),
                 dependency.decidedVersion(),
                 "%s-%s%s.%s".formatted(dependency.artifactId(), dependency.decidedVersion(), dependency.classifier().map(e -> "-" + e).orElse(""), dependency.qualifier())
-        );
+        ));
     }
 
     public Path downloadPathOfPOM(MavenDependency dependency) {
-        return Path.of(
-                ".pottery",
-                "m2",
+        return localRepository.resolve(Path.of(
                 dependency.groupId(),
                 dependency.artifactId(),
                 dependency.decidedVersion(),
                 "%s-%s.pom".formatted(dependency.groupId(), dependency.artifactId(), dependency.decidedVersion())
-        );
+        ));
     }
 }
@@ -0,0 +1,26 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies;
+
+import java.io.Serial;
+import java.util.List;
+
+public final class MissingDependenciesException extends DependencyResolutionException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<String> missing;
+
+    public MissingDependenciesException(List<String> missing) {
+        super("Found %d files missing in the local cache, run `./pottery.sh fetch` without --offline first:%n  %s".formatted(missing.size(), String.join("%n  ".formatted(), missing)));
+        this.missing = List.copyOf(missing);
+    }
+
+    public List<String> missing() {
+        return missing;
+    }
+}
@@ -6,24 +6,45 @@
 
 package cat.pottery.engine.dependencies;
 
+import cat.pottery.engine.dependencies.maven.MavenBOM;
 import cat.pottery.engine.dependencies.maven.MavenDependency;
+import cat.pottery.telemetry.Log;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 public final class PomContextRegistry {
 
     private static final String ID_FORMAT = "%s:%s:%s";
 
-    private record Context(String parentContext, ConcurrentHashMap<String, String> parameters) {}
+    // a context is only published once all its properties are in, so resolved properties are memoized once all its
+    // parents are published too, as they do not change after that
+    private record Context(String parentContext, Map<String, String> parameters, ConcurrentHashMap<String, String> resolvedProperties) {
+        Context(String parentContext, Map<String, String> parameters) {
+            this(parentContext, parameters, new ConcurrentHashMap<>());
+        }
+    }
+
+    private record Lookup(String value, boolean fromContext) {}
+
     private final Map<String, Context> contextMap;
     private final Map<String, String> defaultVersionsSpecified;
+    private final Map<String, PropertyTemplate> templates;
+    private final Map<String, CompletableFuture<Map<String, String>>> managedVersionsPerBom;
+    private final Map<String, String> pinnedVersions;
 
     public PomContextRegistry(Map<String, Context> contextMap, Map<String, String> defaultVersionsSpecified) {
         this.contextMap = contextMap;
         this.defaultVersionsSpecified = defaultVersionsSpecified;
+        this.templates = new ConcurrentHashMap<>();
+        this.managedVersionsPerBom = new ConcurrentHashMap<>();
+        this.pinnedVersions = new ConcurrentHashMap<>();
     }
 
     public String contextIdFor(MavenDependency mavenDependency) {
@@ -34,85 +55,153 @@ public final class PomContextRegistry {
         return ID_FORMAT.formatted(group, artifact, version);
     }
 
-    public String registerFromParent(String parentGroup, String parentId, String parentVersion, String group, String id, String version) {
-        var parentContextId = contextIdFor(parentGroup, parentId, parentVersion);
-        if (!contextMap.containsKey(parentContextId)) {
-            contextMap.put(parentContextId, new Context(null, new ConcurrentHashMap<>()));
-        }
-
-        var parameters = new ConcurrentHashMap<String, String>(0);
-        parameters.put("project.version", version);
-
-        var ctx = new Context(parentContextId, parameters);
-
-        var newId = contextIdFor(group, id, version);
-        contextMap.put(newId, ctx);
+    public String registerFromParent(String parentGroup, String parentId, String parentVersion, String group, String id, String version, Map<String, String> properties) {
+        return register(contextIdFor(parentGroup, parentId, parentVersion), group, id, version, properties);
+    }
 
-        return newId;
+    public String register(String group, String id, String version, Map<String, String> properties) {
+        return register(null, group, id, version, properties);
     }
 
-    public String register(String group, String id, String version) {
-        var parameters = new ConcurrentHashMap<String, String>();
+    // the same POM can be registered as a dependency, a parent and an imported BOM, the first registration is kept
+    private String register(String parentContextId, String group, String id, String version, Map<String, String> properties) {
+        var parameters = new HashMap<String, String>(properties.size() + 1);
         parameters.put("project.version", version);
-
-        var ctx = new Context(null, parameters);
+        parameters.putAll(properties);
 
         var newId = contextIdFor(group, id, version);
-        contextMap.put(newId, ctx);
+        contextMap.putIfAbsent(newId, new Context(parentContextId, Map.copyOf(parameters)));
 
         return newId;
     }
 
-    public void addParameter(String id, String parameter, String value) {
-        contextMap.get(id).parameters().put(parameter, value);
-    }
-
     public String resolveExpression(String id, String expression) {
         if (expression == null) {
             return "";
         }
 
-        var result = expression;
-        for (var i = 0; i < 3 && result.contains("${") && result.contains("}"); i++) {
-            result = resolveExpressionCycle(id, result);
+        var template = templateOf(expression);
+        if (template.isLiteral()) {
+            return expression;
         }
 
-        return result;
+        var resolving = new HashSet<String>();
+        return template.render(property -> resolveProperty(id, property, resolving));
     }
 
-    private String resolveExpressionCycle(String id, String expression) {
-        Context context = contextMap.get(id);
-        Map<String, String> allParams = new HashMap<>();
+    private PropertyTemplate templateOf(String expression) {
+        return templates.computeIfAbsent(expression, PropertyTemplate::parse);
+    }
+
+    private String resolveProperty(String id, String property, Set<String> resolving) {
+        var context = contextMap.get(id);
+        var memoizable = isComplete(id);
+        if (memoizable) {
+            var resolved = context.resolvedProperties().get(property);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+
+        if (!resolving.add(property)) {
+            Log.getInstance().warn("Property %s of %s references itself, it will not be resolved.", property, id);
+            return null;
+        }
+
+        try {
+            var lookup = lookup(id, property);
+            if (lookup == null) {
+                return null;
+            }
+
+            // nested references are resolved from the context the expression started in, like Maven does
+            var value = templateOf(lookup.value()).render(nested -> resolveProperty(id, nested, resolving));
+            if (memoizable && lookup.fromContext()) {
+                context.resolvedProperties().put(property, value);
+            }
+
+            return value;
+        } finally {
+            resolving.remove(property);
+        }
+    }
 
-        allParams.putAll(context.parameters);
-        allParams.putAll(defaultVersionsSpecified);
+    private Lookup lookup(String id, String property) {
+        var contextId = id;
+        while (contextId != null) {
+            var context = contextMap.get(contextId);
+            if (context == null) {
+                break;
+            }
 
-        for (var entry : allParams.entrySet()) {
-            if (!expression.contains("${")) {
-                return expression;
+            var value = context.parameters().get(property);
+            if (value != null) {
+                return new Lookup(value, true);
             }
 
-            var toReplace = "${" + entry.getKey() + "}";
-            expression = expression.replace(toReplace, entry.getValue());
+            contextId = context.parentContext();
         }
 
-        if (context.parentContext != null) {
-            return resolveExpressionCycle(context.parentContext, expression);
+        var defaultVersion = defaultVersionsSpecified.get(property);
+        return defaultVersion == null ? null : new Lookup(defaultVersion, false);
+    }
+
+    private boolean isComplete(String id) {
+        var contextId = id;
+        while (contextId != null) {
+            var context = contextMap.get(contextId);
+            if (context == null) {
+                return false;
+            }
+
+            contextId = context.parentContext();
         }
 
-        return expression;
+        return true;
     }
 
     public void addVersionSuggestion(String context, String qualifiedName, String version) {
         defaultVersionsSpecified.put(qualifiedName, resolveExpression(context, version));
     }
 
+    // a BOM is flattened only once, the threads importing it at the same time wait for the first one
+    public Map<String, String> managedVersionsOf(MavenBOM bom, Function<MavenBOM, Map<String, String>> flatten) {
+        var managedVersions = new CompletableFuture<Map<String, String>>();
+        var existing = managedVersionsPerBom.putIfAbsent(bom.coordinates(), managedVersions);
+        if (existing != null) {
+            return existing.join();
+        }
+
+        try {
+            managedVersions.complete(Map.copyOf(flatten.apply(bom)));
+        } catch (RuntimeException e) {
+            managedVersions.complete(Map.of());
+            throw e;
+        }
+
+        return managedVersions.join();
+    }
+
+    public void importVersionSuggestions(Map<String, String> managedVersions) {
+        // versions managed explicitly by a POM take precedence over the imported ones
+        managedVersions.forEach(defaultVersionsSpecified::putIfAbsent);
+    }
+
+    public void pinVersions(Map<String, String> managedVersions) {
+        // the first BOM declared in the pottery.yaml wins, like the first import in a POM
+        managedVersions.forEach(pinnedVersions::putIfAbsent);
+    }
+
     public boolean hasContext(String id) {
         return contextMap.containsKey(id);
     }
 
-    public String resolveDefaultVersion(String qualifiedName) {
-        return defaultVersionsSpecified.get(qualifiedName);
+    public Optional<String> pinnedVersionOf(String qualifiedName) {
+        return Optional.ofNullable(pinnedVersions.get(qualifiedName));
+    }
 
+    public String resolveDefaultVersion(String qualifiedName) {
+        var pinned = pinnedVersions.get(qualifiedName);
+        return pinned != null ? pinned : defaultVersionsSpecified.get(qualifiedName);
     }
 }
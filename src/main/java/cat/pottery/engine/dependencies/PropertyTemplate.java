@@ -0,0 +1,70 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// a ${...} expression split once into literal text and property references
+final class PropertyTemplate {
+    private sealed interface Segment {}
+    private record Literal(String text) implements Segment {}
+    private record Reference(String property) implements Segment {}
+
+    private final List<Segment> segments;
+
+    private PropertyTemplate(List<Segment> segments) {
+        this.segments = segments;
+    }
+
+    static PropertyTemplate parse(String expression) {
+        List<Segment> segments = new ArrayList<>(2);
+        var position = 0;
+        while (position < expression.length()) {
+            var start = expression.indexOf("${", position);
+            var end = start < 0 ? -1 : expression.indexOf('}', start + 2);
+            if (start < 0 || end < 0) {
+                segments.add(new Literal(expression.substring(position)));
+                break;
+            }
+
+            if (start > position) {
+                segments.add(new Literal(expression.substring(position, start)));
+            }
+
+            segments.add(new Reference(expression.substring(start + 2, end)));
+            position = end + 1;
+        }
+
+        return new PropertyTemplate(List.copyOf(segments));
+    }
+
+    boolean isLiteral() {
+        return segments.stream().noneMatch(segment -> segment instanceof Reference);
+    }
+
+    // references that can not be resolved are kept as they are
+    String render(Function<String, String> resolveProperty) {
+        if (segments.size() == 1 && segments.get(0) instanceof Literal literal) {
+            return literal.text();
+        }
+
+        var result = new StringBuilder();
+        for (var segment : segments) {
+            switch (segment) {
+                case Literal literal -> result.append(literal.text());
+                case Reference reference -> {
+                    var value = resolveProperty.apply(reference.property());
+                    result.append(value == null ? "${" + reference.property() + "}" : value);
+                }
+            }
+        }
+
+        return result.toString();
+    }
+}
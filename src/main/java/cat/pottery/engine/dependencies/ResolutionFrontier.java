@@ -0,0 +1,48 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies;
+
+import cat.pottery.engine.dependencies.maven.MavenDependency;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+// the dependencies found but not processed yet. Pushing never blocks nor drops a dependency, as the workers
+// are the ones pushing, but only a bounded number of them can be taken for processing at the same time
+public final class ResolutionFrontier {
+    private final BlockingQueue<MavenDependency> pending;
+    private final Semaphore inFlight;
+
+    public ResolutionFrontier(int maxInFlight) {
+        this.pending = new LinkedBlockingQueue<>();
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public void push(MavenDependency dependency) {
+        pending.add(dependency);
+    }
+
+    // every dependency taken must be released once it is processed and its jar downloaded
+    public MavenDependency take() throws InterruptedException {
+        inFlight.acquire();
+        try {
+            return pending.take();
+        } catch (InterruptedException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    public void release() {
+        inFlight.release();
+    }
+
+    public int size() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies;
+
+import cat.pottery.engine.dependencies.maven.DownloadedDependency;
+import cat.pottery.engine.dependencies.maven.MavenDependency;
+import cat.pottery.engine.toolchain.Toolchain;
+import cat.pottery.telemetry.Log;
+import cat.pottery.ui.artifact.ArtifactDocument;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class ResolvedGraphLock {
+    private static final String FORMAT_VERSION = "1";
+    private static final String FINGERPRINT_PREFIX = "fingerprint=";
+
+    private record RememberedGraph(String fingerprint, FileTime lockFileModified, List<DownloadedDependency> dependencies) {}
+
+    // the graphs read or written by this process, so a daemon does not read and check the lock file on every build
+    private static final Map<Path, RememberedGraph> REMEMBERED_GRAPHS = new ConcurrentHashMap<>();
+
+    private final Path lockFile;
+
+    public ResolvedGraphLock(Path lockFile) {
+        this.lockFile = lockFile;
+    }
+
+    public static ResolvedGraphLock forScope(boolean includeTestDependencies) {
+        return new ResolvedGraphLock(Path.of(".pottery", includeTestDependencies ? "resolved-test-graph.lock" : "resolved-graph.lock"));
+    }
+
+    public String fingerprintOf(ArtifactDocument document) {
+        var fingerprint = new StringBuilder();
+        fingerprint.append(FORMAT_VERSION).append('\n');
+        fingerprint.append(Toolchain.systemDefault().potteryVersion()).append('\n');
+        fingerprint.append("conflicts=").append(document.resolver().conflicts()).append('\n');
+
+        new TreeMap<>(document.parameters()).forEach((key, value) -> fingerprint.append(key).append('=').append(value).append('\n'));
+        document.artifact().dependencies().forEach(dependency -> {
+            fingerprint.append(dependency.scope()).append(' ').append(dependency.qualifiedName());
+            dependency.exclusions().forEach(exclusion -> fingerprint.append(" -").append(exclusion));
+            fingerprint.append('\n');
+        });
+
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(fingerprint.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error(e);
+        }
+    }
+
+    public Optional<List<DownloadedDependency>> read(String fingerprint) {
+        if (!Files.exists(lockFile)) {
+            return Optional.empty();
+        }
+
+        var remembered = REMEMBERED_GRAPHS.get(lockFile.toAbsolutePath());
+        if (remembered != null && remembered.fingerprint().equals(fingerprint) && remembered.lockFileModified().equals(lastModifiedTimeOf(lockFile))
+                && remembered.dependencies().stream().allMatch(ResolvedGraphLock::isDownloaded)) {
+            return Optional.of(remembered.dependencies());
+        }
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(lockFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not read the resolved dependency graph at %s, resolving again.", lockFile);
+            return Optional.empty();
+        }
+
+        if (lines.isEmpty() || !lines.get(0).equals(FINGERPRINT_PREFIX + fingerprint)) {
+            return Optional.empty();
+        }
+
+        var dependencies = new ArrayList<DownloadedDependency>(lines.size() - 1);
+        for (var line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) {
+                continue;
+            }
+
+            var fields = line.split("\t", -1);
+            if (fields.length != 8) {
+                return Optional.empty();
+            }
+
+            var dependency = new MavenDependency(
+                    fields[0],
+                    fields[1],
+                    fields[2],
+                    fields[3],
+                    MavenDependency.Scope.valueOf(fields[4]),
+                    fields[5],
+                    fields[6].isEmpty() ? Optional.empty() : Optional.of(fields[6])
+            );
+
+            // snapshots can change remotely, so they always need to go through the resolver
+            if (dependency.isSnapshot()) {
+                return Optional.empty();
+            }
+
+            var downloaded = new DownloadedDependency(dependency, Path.of(fields[7]));
+            if (!isDownloaded(downloaded)) {
+                return Optional.empty();
+            }
+
+            dependencies.add(downloaded);
+        }
+
+        remember(fingerprint, dependencies);
+        return Optional.of(dependencies);
+    }
+
+    public void write(String fingerprint, List<DownloadedDependency> dependencies) {
+        var content = new StringBuilder();
+        content.append(FINGERPRINT_PREFIX).append(fingerprint).append('\n');
+
+        for (var downloaded : dependencies) {
+            var dependency = downloaded.dependency();
+            content.append(String.join("\t",
+                    dependency.groupId(),
+                    dependency.artifactId(),
+                    dependency.version(),
+                    dependency.type(),
+                    dependency.scope().name(),
+                    dependency.qualifier(),
+                    dependency.classifier().orElse(""),
+                    downloaded.downloadPath().toString()
+            )).append('\n');
+        }
+
+        try {
+            Files.createDirectories(lockFile.toAbsolutePath().getParent());
+            var temporaryFile = lockFile.resolveSibling(lockFile.getFileName() + ".tmp");
+            Files.writeString(temporaryFile, content, StandardCharsets.UTF_8);
+            Files.move(temporaryFile, lockFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not write the resolved dependency graph to %s: %s", lockFile, e.getMessage());
+            return;
+        }
+
+        // read never returns a graph with snapshots, so neither does the remembered one
+        if (dependencies.stream().noneMatch(downloaded -> downloaded.dependency().isSnapshot())) {
+            remember(fingerprint, List.copyOf(dependencies));
+        }
+    }
+
+    private void remember(String fingerprint, List<DownloadedDependency> dependencies) {
+        var modified = lastModifiedTimeOf(lockFile);
+        if (modified != null) {
+            REMEMBERED_GRAPHS.put(lockFile.toAbsolutePath(), new RememberedGraph(fingerprint, modified, dependencies));
+        }
+    }
+
+    private static boolean isDownloaded(DownloadedDependency downloaded) {
+        return downloaded.dependency().type().equals("pom") || Files.exists(downloaded.downloadPath());
+    }
+
+    private static FileTime lastModifiedTimeOf(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
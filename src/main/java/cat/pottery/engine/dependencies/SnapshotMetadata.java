@@ -0,0 +1,69 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies;
+
+import cat.pottery.engine.dependencies.repository.RepositoryClient;
+import cat.pottery.telemetry.Log;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Properties;
+
+public record SnapshotMetadata(
+        Optional<String> etag,
+        Optional<String> lastModified,
+        Instant checkedAt
+) {
+    public static Optional<SnapshotMetadata> read(Path artifact) {
+        var properties = new Properties();
+        try (var input = Files.newInputStream(pathOf(artifact))) {
+            properties.load(input);
+            return Optional.of(new SnapshotMetadata(
+                    Optional.ofNullable(properties.getProperty("etag")),
+                    Optional.ofNullable(properties.getProperty("last-modified")),
+                    Instant.parse(properties.getProperty("checked-at"))
+            ));
+        } catch (IOException | DateTimeException | NullPointerException e) {
+            return Optional.empty();
+        }
+    }
+
+    public static SnapshotMetadata of(RepositoryClient.Validators validators, Instant checkedAt) {
+        return new SnapshotMetadata(validators.etag(), validators.lastModified(), checkedAt);
+    }
+
+    public RepositoryClient.Validators validators() {
+        return new RepositoryClient.Validators(etag, lastModified);
+    }
+
+    public void write(Path artifact) {
+        var properties = new Properties();
+        etag.ifPresent(value -> properties.setProperty("etag", value));
+        lastModified.ifPresent(value -> properties.setProperty("last-modified", value));
+        properties.setProperty("checked-at", checkedAt.toString());
+
+        var metadata = pathOf(artifact);
+        var temporary = metadata.resolveSibling(metadata.getFileName() + ".tmp");
+        try {
+            try (var output = Files.newOutputStream(temporary)) {
+                properties.store(output, null);
+            }
+            Files.move(temporary, metadata, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not store the snapshot metadata of %s, it will be downloaded again.", artifact);
+        }
+    }
+
+    private static Path pathOf(Path artifact) {
+        return artifact.resolveSibling(artifact.getFileName() + ".snapshot");
+    }
+}
@@ -6,12 +6,22 @@
 
 package cat.pottery.engine.dependencies.maven;
 
+import java.util.Optional;
+
 public record MavenBOM(
         String groupId,
         String artifactId,
         String version,
         Scope scope
 ) {
+    public String coordinates() {
+        return "%s:%s:%s".formatted(groupId, artifactId, version);
+    }
+
+    public MavenDependency toPomDependency() {
+        return new MavenDependency(groupId, artifactId, version, "pom", MavenDependency.Scope.IMPORT, "", Optional.empty());
+    }
+
     public enum Scope {
         IMPORT
     }
@@ -6,9 +6,10 @@
 
 package cat.pottery.engine.dependencies.maven;
 
-import java.util.Objects;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Optional;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 public record MavenDependency(
         String groupId,
@@ -17,81 +18,94 @@ public record MavenDependency(
         String type,
         Scope scope,
         String qualifier,
-        Optional<String> classifier
+        Optional<String> classifier,
+        Set<String> exclusions
 ) implements Comparable<MavenDependency> {
-    private static final Pattern VERSION_PATTERN = Pattern.compile("(?<major>\\d+)\\.(?<minor>\\d+)(\\.(?<patch>\\d+)).*?");
-    private static final Pattern IS_RANGE = Pattern.compile("[(\\[].+,.+[)\\]]");
+    private static final String ANY = "*";
+
+    public MavenDependency(String groupId, String artifactId, String version, String type, Scope scope, String qualifier, Optional<String> classifier) {
+        this(groupId, artifactId, version, type, scope, qualifier, classifier, Set.of());
+    }
 
     public String qualifiedName() {
         return "%s:%s".formatted(groupId, artifactId);
     }
 
+    public MavenDependency withVersion(String version) {
+        return new MavenDependency(groupId, artifactId, version, type, scope, qualifier, classifier, exclusions);
+    }
+
     public MavenDependency withVersionIfUnspecified(String version) {
         if (version != null && (this.version == null || this.version.isBlank())) {
-            return new MavenDependency(groupId, artifactId, version, type, scope, qualifier, classifier);
+            return new MavenDependency(groupId, artifactId, version, type, scope, qualifier, classifier, exclusions);
         }
 
         return this;
     }
 
-    public String decidedVersion() {
-        if (IS_RANGE.asMatchPredicate().test(version)) {
-            return version.split(",")[1].trim().replace("]", "").replace(")", "");
+    // exclusions are inherited, what a dependency excludes is also excluded from everything below it
+    public MavenDependency withExclusions(Collection<String> exclusions) {
+        if (exclusions.isEmpty()) {
+            return this;
         }
 
-        return version;
-    }
-    public boolean isSnapshot() {
-        return version.endsWith("-SNAPSHOT");
+        var allExclusions = new HashSet<>(this.exclusions);
+        allExclusions.addAll(exclusions);
+        return new MavenDependency(groupId, artifactId, version, type, scope, qualifier, classifier, Set.copyOf(allExclusions));
     }
 
-    public boolean isCompatibleWith(MavenDependency mavenDependency) {
-        if (version.equals(mavenDependency.version)) {
-            return true;
-        }
-
-        var thisMatcher = VERSION_PATTERN.matcher(version);
-        var otherMatcher = VERSION_PATTERN.matcher(mavenDependency.version);
+    // a dependency found through many paths is only excluded from what all of them exclude
+    public MavenDependency withExclusionsSharedWith(Set<String> exclusions) {
+        var sharedExclusions = new HashSet<>(this.exclusions);
+        sharedExclusions.retainAll(exclusions);
+        return new MavenDependency(groupId, artifactId, version, type, scope, qualifier, classifier, Set.copyOf(sharedExclusions));
+    }
 
-        if (!thisMatcher.matches() || !otherMatcher.matches()) {
+    // exclusions are group:artifact pairs, where any of both can be a * wildcard
+    public boolean excludes(MavenDependency dependency) {
+        if (exclusions.isEmpty()) {
             return false;
         }
 
-        var thisMajor = Integer.parseInt(thisMatcher.group("major"));
-        var thisMinor = Integer.parseInt(thisMatcher.group("minor"));
-        var thisPatch = Integer.parseInt(Objects.requireNonNullElse(thisMatcher.group("patch"), "0"));
-
-        var otherMajor = Integer.parseInt(otherMatcher.group("major"));
-        var otherMinor = Integer.parseInt(otherMatcher.group("minor"));
-        var otherPatch = Integer.parseInt(Objects.requireNonNullElse(otherMatcher.group("patch"), "0"));
-
-        if (thisMajor != otherMajor) {
-            return false;
-        }
+        return exclusions.contains(dependency.qualifiedName())
+                || exclusions.contains(dependency.groupId() + ":" + ANY)
+                || exclusions.contains(ANY + ":" + dependency.artifactId())
+                || exclusions.contains(ANY + ":" + ANY);
+    }
 
-        if (thisMinor != otherMinor) {
-            return false;
+    public String decidedVersion() {
+        if (VersionRange.isRange(version)) {
+            try {
+                return VersionRange.parse(version).decidedVersion();
+            } catch (IllegalArgumentException e) {
+                return version;
+            }
         }
 
-        return true;
+        return version;
     }
 
-    public MavenDependency max(MavenDependency dependency) {
-        if (!isCompatibleWith(dependency)) {
-            return this;
-        }
+    public Version parsedVersion() {
+        return Version.of(decidedVersion());
+    }
 
-        var thisMatcher = VERSION_PATTERN.matcher(version);
-        var otherMatcher = VERSION_PATTERN.matcher(dependency.version);
+    public boolean isSnapshot() {
+        return version.endsWith("-SNAPSHOT");
+    }
 
-        if (!thisMatcher.matches() || !otherMatcher.matches()) {
-            return null;
+    public boolean isCompatibleWith(MavenDependency mavenDependency) {
+        if (version.equals(mavenDependency.version)) {
+            return true;
         }
 
-        var thisPatch = Integer.parseInt(thisMatcher.group("patch"));
-        var otherPatch = Integer.parseInt(otherMatcher.group("patch"));
+        var thisVersion = parsedVersion();
+        var otherVersion = mavenDependency.parsedVersion();
 
-        if (thisPatch > otherPatch) {
+        return thisVersion.major() == otherVersion.major() && thisVersion.minor() == otherVersion.minor();
+    }
+
+    public MavenDependency max(MavenDependency dependency) {
+        if (parsedVersion().compareTo(dependency.parsedVersion()) >= 0) {
             return this;
         }
 
@@ -100,13 +114,7 @@ public record MavenDependency(
 
     @Override
     public int compareTo(MavenDependency o) {
-        if (max(o) == this) {
-            return -1;
-        } else if (max(o) == o) {
-            return 1;
-        }
-
-        return 0;
+        return parsedVersion().compareTo(o.parsedVersion());
     }
 
     public boolean isNotVersioned() {
@@ -0,0 +1,44 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies.maven;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public record PomModel(
+        String groupId,
+        String artifactId,
+        String version,
+        Optional<Parent> parent,
+        Map<String, String> properties,
+        List<Dependency> managedDependencies,
+        List<Dependency> dependencies
+) {
+    public record Parent(String groupId, String artifactId, String version) {}
+
+    public record Dependency(
+            String groupId,
+            String artifactId,
+            String version,
+            String type,
+            String scope,
+            String classifier,
+            boolean optional,
+            List<Exclusion> exclusions
+    ) {
+        public Dependency(String groupId, String artifactId, String version, String type, String scope, String classifier) {
+            this(groupId, artifactId, version, type, scope, classifier, false, List.of());
+        }
+    }
+
+    public record Exclusion(String groupId, String artifactId) {
+        public String qualifiedName() {
+            return "%s:%s".formatted(groupId, artifactId);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies.maven;
+
+import cat.pottery.telemetry.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public final class PomModelCache {
+    private static final int MAGIC = 0x504f4d42;
+    private static final int FORMAT_VERSION = 2;
+
+    public Path sidecarOf(Path pom) {
+        return pom.resolveSibling(pom.getFileName() + ".bin");
+    }
+
+    public Optional<PomModel> read(Path pom) {
+        var sidecar = sidecarOf(pom);
+
+        try (var channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return Optional.empty();
+            }
+
+            // the sidecar is only valid for the exact POM it was written from
+            if (buffer.getLong() != Files.size(pom) || buffer.getLong() != Files.getLastModifiedTime(pom).toMillis()) {
+                return Optional.empty();
+            }
+
+            var groupId = readString(buffer);
+            var artifactId = readString(buffer);
+            var version = readString(buffer);
+
+            Optional<PomModel.Parent> parent = Optional.empty();
+            if (buffer.get() == 1) {
+                parent = Optional.of(new PomModel.Parent(readString(buffer), readString(buffer), readString(buffer)));
+            }
+
+            var propertyCount = buffer.getInt();
+            Map<String, String> properties = new LinkedHashMap<>(propertyCount * 2);
+            for (var i = 0; i < propertyCount; i++) {
+                properties.put(readString(buffer), readString(buffer));
+            }
+
+            var managedDependencies = readDependencies(buffer);
+            var dependencies = readDependencies(buffer);
+
+            return Optional.of(new PomModel(groupId, artifactId, version, parent, properties, managedDependencies, dependencies));
+        } catch (IOException | BufferUnderflowException e) {
+            return Optional.empty();
+        }
+    }
+
+    public void write(Path pom, PomModel model) {
+        var sidecar = sidecarOf(pom);
+        // the same POM can be parsed by several threads at once, like a parent that is also imported as a BOM, so every
+        // writer has its own temporary file and only complete sidecars are moved into place
+        var temporary = sidecar.resolveSibling(sidecar.getFileName() + "." + ProcessHandle.current().pid() + "-" + Thread.currentThread().threadId() + ".tmp");
+
+        try {
+            try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeLong(Files.size(pom));
+                output.writeLong(Files.getLastModifiedTime(pom).toMillis());
+
+                writeString(output, model.groupId());
+                writeString(output, model.artifactId());
+                writeString(output, model.version());
+
+                output.writeByte(model.parent().isPresent() ? 1 : 0);
+                if (model.parent().isPresent()) {
+                    var parent = model.parent().get();
+                    writeString(output, parent.groupId());
+                    writeString(output, parent.artifactId());
+                    writeString(output, parent.version());
+                }
+
+                output.writeInt(model.properties().size());
+                for (var property : model.properties().entrySet()) {
+                    writeString(output, property.getKey());
+                    writeString(output, property.getValue());
+                }
+
+                writeDependencies(output, model.managedDependencies());
+                writeDependencies(output, model.dependencies());
+            }
+
+            Files.move(temporary, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not cache the parsed POM %s, it will be parsed again on the next build.", pom);
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private List<PomModel.Dependency> readDependencies(ByteBuffer buffer) {
+        var count = buffer.getInt();
+        List<PomModel.Dependency> dependencies = new ArrayList<>(count);
+        for (var i = 0; i < count; i++) {
+            var groupId = readString(buffer);
+            var artifactId = readString(buffer);
+            var version = readString(buffer);
+            var type = readString(buffer);
+            var scope = readString(buffer);
+            var classifier = readString(buffer);
+            var optional = buffer.get() == 1;
+
+            var exclusionCount = buffer.getInt();
+            List<PomModel.Exclusion> exclusions = new ArrayList<>(exclusionCount);
+            for (var j = 0; j < exclusionCount; j++) {
+                exclusions.add(new PomModel.Exclusion(readString(buffer), readString(buffer)));
+            }
+
+            dependencies.add(new PomModel.Dependency(groupId, artifactId, version, type, scope, classifier, optional, exclusions));
+        }
+
+        return dependencies;
+    }
+
+    private void writeDependencies(DataOutputStream output, List<PomModel.Dependency> dependencies) throws IOException {
+        output.writeInt(dependencies.size());
+        for (var dependency : dependencies) {
+            writeString(output, dependency.groupId());
+            writeString(output, dependency.artifactId());
+            writeString(output, dependency.version());
+            writeString(output, dependency.type());
+            writeString(output, dependency.scope());
+            writeString(output, dependency.classifier());
+            output.writeByte(dependency.optional() ? 1 : 0);
+
+            output.writeInt(dependency.exclusions().size());
+            for (var exclusion : dependency.exclusions()) {
+                writeString(output, exclusion.groupId());
+                writeString(output, exclusion.artifactId());
+            }
+        }
+    }
+
+    private String readString(ByteBuffer buffer) {
+        var length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies.maven;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+public final class PomReader {
+    private final XMLInputFactory inputFactory;
+
+    public PomReader() {
+        // factories are thread safe once configured, so a single one is shared by all resolver threads
+        this.inputFactory = XMLInputFactory.newInstance();
+        this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    public PomModel read(Path pom) throws IOException, XMLStreamException {
+        try (var input = new BufferedInputStream(Files.newInputStream(pom))) {
+            return read(input);
+        }
+    }
+
+    public PomModel read(InputStream input) throws XMLStreamException {
+        var reader = inputFactory.createXMLStreamReader(input);
+        try {
+            while (reader.hasNext() && reader.next() != START_ELEMENT) {
+            }
+
+            String groupId = null, artifactId = null, version = null;
+            PomModel.Parent parent = null;
+            Map<String, String> properties = new LinkedHashMap<>();
+            List<PomModel.Dependency> managedDependencies = new ArrayList<>();
+            List<PomModel.Dependency> dependencies = new ArrayList<>();
+
+            while (nextChildElement(reader)) {
+                switch (reader.getLocalName()) {
+                    case "groupId" -> groupId = readText(reader);
+                    case "artifactId" -> artifactId = readText(reader);
+                    case "version" -> version = readText(reader);
+                    case "parent" -> parent = readParent(reader);
+                    case "properties" -> readProperties(reader, properties);
+                    case "dependencyManagement" -> {
+                        while (nextChildElement(reader)) {
+                            if (reader.getLocalName().equals("dependencies")) {
+                                readDependencies(reader, managedDependencies);
+                            } else {
+                                skipElement(reader);
+                            }
+                        }
+                    }
+                    case "dependencies" -> readDependencies(reader, dependencies);
+                    default -> skipElement(reader);
+                }
+            }
+
+            return new PomModel(groupId, artifactId, version, Optional.ofNullable(parent), properties, managedDependencies, dependencies);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private PomModel.Parent readParent(XMLStreamReader reader) throws XMLStreamException {
+        String groupId = null, artifactId = null, version = null;
+        while (nextChildElement(reader)) {
+            switch (reader.getLocalName()) {
+                case "groupId" -> groupId = readText(reader);
+                case "artifactId" -> artifactId = readText(reader);
+                case "version" -> version = readText(reader);
+                default -> skipElement(reader);
+            }
+        }
+
+        return new PomModel.Parent(groupId, artifactId, version);
+    }
+
+    private void readProperties(XMLStreamReader reader, Map<String, String> properties) throws XMLStreamException {
+        while (nextChildElement(reader)) {
+            var name = reader.getLocalName();
+            properties.put(name, readText(reader));
+        }
+    }
+
+    private void readDependencies(XMLStreamReader reader, List<PomModel.Dependency> dependencies) throws XMLStreamException {
+        while (nextChildElement(reader)) {
+            if (!reader.getLocalName().equals("dependency")) {
+                skipElement(reader);
+                continue;
+            }
+
+            String groupId = null, artifactId = null, version = null, type = null, scope = null, classifier = null;
+            var optional = false;
+            List<PomModel.Exclusion> exclusions = List.of();
+            while (nextChildElement(reader)) {
+                switch (reader.getLocalName()) {
+                    case "groupId" -> groupId = readText(reader);
+                    case "artifactId" -> artifactId = readText(reader);
+                    case "version" -> version = readText(reader);
+                    case "type" -> type = readText(reader);
+                    case "scope" -> scope = readText(reader);
+                    case "classifier" -> classifier = readText(reader);
+                    case "optional" -> optional = readText(reader).equals("true");
+                    case "exclusions" -> exclusions = readExclusions(reader);
+                    default -> skipElement(reader);
+                }
+            }
+
+            dependencies.add(new PomModel.Dependency(groupId, artifactId, version, type, scope, classifier, optional, exclusions));
+        }
+    }
+
+    private List<PomModel.Exclusion> readExclusions(XMLStreamReader reader) throws XMLStreamException {
+        List<PomModel.Exclusion> exclusions = new ArrayList<>(2);
+        while (nextChildElement(reader)) {
+            if (!reader.getLocalName().equals("exclusion")) {
+                skipElement(reader);
+                continue;
+            }
+
+            String groupId = null, artifactId = null;
+            while (nextChildElement(reader)) {
+                switch (reader.getLocalName()) {
+                    case "groupId" -> groupId = readText(reader);
+                    case "artifactId" -> artifactId = readText(reader);
+                    default -> skipElement(reader);
+                }
+            }
+
+            exclusions.add(new PomModel.Exclusion(groupId, artifactId));
+        }
+
+        return exclusions;
+    }
+
+    // moves to the next child element of the current element, returns false once the current element ends
+    private boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case START_ELEMENT -> {
+                    return true;
+                }
+                case END_ELEMENT -> {
+                    return false;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private String readText(XMLStreamReader reader) throws XMLStreamException {
+        String text = null;
+        StringBuilder builder = null;
+        var depth = 1;
+
+        while (depth > 0) {
+            switch (reader.next()) {
+                case START_ELEMENT -> depth++;
+                case END_ELEMENT -> depth--;
+                case CHARACTERS, CDATA, SPACE -> {
+                    if (text == null) {
+                        text = reader.getText();
+                    } else {
+                        if (builder == null) {
+                            builder = new StringBuilder(text);
+                        }
+                        builder.append(reader.getText());
+                    }
+                }
+            }
+        }
+
+        if (builder != null) {
+            text = builder.toString();
+        }
+
+        return text == null ? "" : text.trim();
+    }
+
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        var depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case START_ELEMENT -> depth++;
+                case END_ELEMENT -> depth--;
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies.maven;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// a version parsed once, ordered like Maven orders versions: 1.0-alpha < 1.0-rc1 < 1.0-SNAPSHOT < 1.0 < 1.0-sp1 < 1.0.1
+public final class Version implements Comparable<Version> {
+    private static final Map<String, Version> INTERNED = new ConcurrentHashMap<>();
+
+    private static final List<String> QUALIFIERS = List.of("alpha", "beta", "milestone", "rc", "snapshot", "", "sp");
+    private static final Map<String, String> ALIASES = Map.of("ga", "", "final", "", "release", "", "cr", "rc");
+    private static final String RELEASE = String.valueOf(QUALIFIERS.indexOf(""));
+
+    private final String value;
+    private final ListItem items;
+    private final String canonical;
+
+    private Version(String value) {
+        this.value = value;
+        this.items = parse(value);
+        this.canonical = items.toString();
+    }
+
+    public static Version of(String value) {
+        return INTERNED.computeIfAbsent(value, Version::new);
+    }
+
+    public int major() {
+        return intAt(0);
+    }
+
+    public int minor() {
+        return intAt(1);
+    }
+
+    public boolean isSnapshot() {
+        return value.endsWith("-SNAPSHOT");
+    }
+
+    private int intAt(int index) {
+        if (items.items.size() > index && items.items.get(index) instanceof IntItem integer) {
+            return integer.value.intValue();
+        }
+
+        return 0;
+    }
+
+    @Override
+    public int compareTo(Version other) {
+        return items.compareTo(other.items);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Version version && canonical.equals(version.canonical);
+    }
+
+    @Override
+    public int hashCode() {
+        return canonical.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+
+    private sealed interface Item permits IntItem, StringItem, ListItem {
+        // other is null when the compared version has no item at this position
+        int compareTo(Item other);
+
+        boolean isNull();
+    }
+
+    private record IntItem(BigInteger value) implements Item {
+        @Override
+        public int compareTo(Item other) {
+            return switch (other) {
+                case null -> value.signum() == 0 ? 0 : 1;
+                case IntItem integer -> value.compareTo(integer.value);
+                case StringItem ignored -> 1;
+                case ListItem ignored -> 1;
+            };
+        }
+
+        @Override
+        public boolean isNull() {
+            return value.signum() == 0;
+        }
+
+        @Override
+        public String toString() {
+            return value.toString();
+        }
+    }
+
+    private record StringItem(String value) implements Item {
+        static StringItem of(String value, boolean followedByDigit) {
+            if (followedByDigit && value.length() == 1) {
+                // 1.0a1 is 1.0-alpha-1
+                value = switch (value.charAt(0)) {
+                    case 'a' -> "alpha";
+                    case 'b' -> "beta";
+                    case 'm' -> "milestone";
+                    default -> value;
+                };
+            }
+
+            return new StringItem(ALIASES.getOrDefault(value, value));
+        }
+
+        private static String comparableQualifier(String qualifier) {
+            var index = QUALIFIERS.indexOf(qualifier);
+            // unknown qualifiers come after the known ones, in lexical order
+            return index < 0 ? QUALIFIERS.size() + "-" + qualifier : String.valueOf(index);
+        }
+
+        @Override
+        public int compareTo(Item other) {
+            return switch (other) {
+                case null -> comparableQualifier(value).compareTo(RELEASE);
+                case IntItem ignored -> -1;
+                case StringItem string -> comparableQualifier(value).compareTo(comparableQualifier(string.value));
+                case ListItem ignored -> -1;
+            };
+        }
+
+        @Override
+        public boolean isNull() {
+            return value.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    private static final class ListItem implements Item {
+        private final List<Item> items = new ArrayList<>(4);
+
+        void normalize() {
+            for (var i = items.size() - 1; i >= 0; i--) {
+                var last = items.get(i);
+                if (last.isNull()) {
+                    items.remove(i);
+                } else if (!(last instanceof ListItem)) {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Item other) {
+            return switch (other) {
+                case null -> items.isEmpty() ? 0 : items.get(0).compareTo(null);
+                case IntItem ignored -> -1;
+                case StringItem ignored -> 1;
+                case ListItem list -> {
+                    var left = items.iterator();
+                    var right = list.items.iterator();
+                    while (left.hasNext() || right.hasNext()) {
+                        var l = left.hasNext() ? left.next() : null;
+                        var r = right.hasNext() ? right.next() : null;
+                        var result = l == null ? (r == null ? 0 : -r.compareTo(null)) : l.compareTo(r);
+                        if (result != 0) {
+                            yield result;
+                        }
+                    }
+
+                    yield 0;
+                }
+            };
+        }
+
+        @Override
+        public boolean isNull() {
+            return items.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            var result = new StringBuilder();
+            for (var item : items) {
+                if (!result.isEmpty()) {
+                    result.append(item instanceof ListItem ? '-' : '.');
+                }
+                result.append(item);
+            }
+
+            return result.toString();
+        }
+    }
+
+    private static ListItem parse(String version) {
+        var lowerCase = version.toLowerCase(Locale.ENGLISH);
+        var root = new ListItem();
+        var list = root;
+        Deque<ListItem> stack = new ArrayDeque<>();
+        stack.push(list);
+
+        var isDigit = false;
+        var start = 0;
+        for (var i = 0; i < lowerCase.length(); i++) {
+            var c = lowerCase.charAt(i);
+            if (c == '.' || c == '-') {
+                list.items.add(i == start ? new IntItem(BigInteger.ZERO) : itemOf(isDigit, lowerCase.substring(start, i)));
+                start = i + 1;
+
+                if (c == '-') {
+                    var sublist = new ListItem();
+                    list.items.add(sublist);
+                    list = sublist;
+                    stack.push(list);
+                }
+            } else if (Character.isDigit(c)) {
+                if (!isDigit && i > start) {
+                    list.items.add(StringItem.of(lowerCase.substring(start, i), true));
+                    start = i;
+
+                    var sublist = new ListItem();
+                    list.items.add(sublist);
+                    list = sublist;
+                    stack.push(list);
+                }
+
+                isDigit = true;
+            } else {
+                if (isDigit && i > start) {
+                    list.items.add(itemOf(true, lowerCase.substring(start, i)));
+                    start = i;
+
+                    var sublist = new ListItem();
+                    list.items.add(sublist);
+                    list = sublist;
+                    stack.push(list);
+                }
+
+                isDigit = false;
+            }
+        }
+
+        if (lowerCase.length() > start) {
+            list.items.add(itemOf(isDigit, lowerCase.substring(start)));
+        }
+
+        while (!stack.isEmpty()) {
+            stack.pop().normalize();
+        }
+
+        return root;
+    }
+
+    private static Item itemOf(boolean isDigit, String text) {
+        return isDigit ? new IntItem(new BigInteger(text)) : StringItem.of(text, false);
+    }
+}
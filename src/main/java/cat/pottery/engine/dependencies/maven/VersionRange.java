@@ -0,0 +1,119 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// a Maven version range, like [1.0,2.0) or (,1.0],[1.2,), made of one or more restrictions
+public record VersionRange(List<Restriction> restrictions) {
+    private static final Map<String, VersionRange> PARSED = new ConcurrentHashMap<>();
+
+    public record Restriction(Optional<Version> lowerBound, boolean lowerInclusive, Optional<Version> upperBound, boolean upperInclusive) {
+        public boolean contains(Version version) {
+            if (lowerBound.isPresent()) {
+                var comparison = version.compareTo(lowerBound.get());
+                if (comparison < 0 || (comparison == 0 && !lowerInclusive)) {
+                    return false;
+                }
+            }
+
+            if (upperBound.isPresent()) {
+                var comparison = version.compareTo(upperBound.get());
+                return comparison < 0 || (comparison == 0 && upperInclusive);
+            }
+
+            return true;
+        }
+    }
+
+    public static boolean isRange(String version) {
+        return version != null && !version.isEmpty() && (version.charAt(0) == '[' || version.charAt(0) == '(');
+    }
+
+    public static VersionRange parse(String range) {
+        return PARSED.computeIfAbsent(range, VersionRange::parseRestrictions);
+    }
+
+    // like pottery always did, the upper bound of the range is the version to use, or the lower bound if it is open
+    public String decidedVersion() {
+        var last = restrictions.get(restrictions.size() - 1);
+        return last.upperBound().or(last::lowerBound).map(Version::toString).orElse("");
+    }
+
+    public boolean contains(Version version) {
+        for (var restriction : restrictions) {
+            if (restriction.contains(version)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static VersionRange parseRestrictions(String range) {
+        var restrictions = new ArrayList<Restriction>(1);
+        var start = 0;
+        while (start < range.length()) {
+            var end = indexOfClosing(range, start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unbounded version range %s.".formatted(range));
+            }
+
+            restrictions.add(restrictionOf(range, range.substring(start, end + 1)));
+
+            start = end + 1;
+            while (start < range.length() && (range.charAt(start) == ',' || Character.isWhitespace(range.charAt(start)))) {
+                start++;
+            }
+        }
+
+        if (restrictions.isEmpty()) {
+            throw new IllegalArgumentException("Empty version range %s.".formatted(range));
+        }
+
+        return new VersionRange(List.copyOf(restrictions));
+    }
+
+    private static int indexOfClosing(String range, int from) {
+        for (var i = from; i < range.length(); i++) {
+            var c = range.charAt(i);
+            if (c == ']' || c == ')') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static Restriction restrictionOf(String range, String restriction) {
+        var lowerInclusive = restriction.charAt(0) == '[';
+        var upperInclusive = restriction.charAt(restriction.length() - 1) == ']';
+        var bounds = restriction.substring(1, restriction.length() - 1);
+
+        var comma = bounds.indexOf(',');
+        if (comma < 0) {
+            // [1.0] is exactly 1.0
+            if (!lowerInclusive || !upperInclusive || bounds.isBlank()) {
+                throw new IllegalArgumentException("Invalid version range %s.".formatted(range));
+            }
+
+            var version = Optional.of(Version.of(bounds.trim()));
+            return new Restriction(version, true, version, true);
+        }
+
+        return new Restriction(boundOf(bounds.substring(0, comma)), lowerInclusive, boundOf(bounds.substring(comma + 1)), upperInclusive);
+    }
+
+    private static Optional<Version> boundOf(String bound) {
+        var trimmed = bound.trim();
+        return trimmed.isEmpty() ? Optional.empty() : Optional.of(Version.of(trimmed));
+    }
+}
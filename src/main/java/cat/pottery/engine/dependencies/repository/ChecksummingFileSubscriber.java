@@ -0,0 +1,156 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies.repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+// writes the body into a partial file, hashing the bytes as they arrive
+final class ChecksummingFileSubscriber implements HttpResponse.BodySubscriber<ChecksummingFileSubscriber.Digests> {
+    record Digests(String sha1, String sha256) {}
+
+    private final Path partialFile;
+    private final boolean append;
+    private final MessageDigest sha1;
+    private final MessageDigest sha256;
+    private final CompletableFuture<Digests> result;
+
+    private FileChannel channel;
+    private Flow.Subscription subscription;
+
+    ChecksummingFileSubscriber(Path partialFile, boolean append) {
+        this.partialFile = partialFile;
+        this.append = append;
+        this.sha1 = digestOf("SHA-1");
+        this.sha256 = digestOf("SHA-256");
+        this.result = new CompletableFuture<>();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        try {
+            if (append) {
+                // the bytes downloaded by a previous attempt are part of the checksum too
+                update(sha1, sha256, partialFile);
+
+                channel = FileChannel.open(partialFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } else {
+                channel = FileChannel.open(partialFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+        } catch (IOException e) {
+            subscription.cancel();
+            result.completeExceptionally(e);
+            return;
+        }
+
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (result.isDone()) {
+            return;
+        }
+
+        try {
+            for (var item : items) {
+                sha1.update(item.duplicate());
+                sha256.update(item.duplicate());
+                while (item.hasRemaining()) {
+                    channel.write(item);
+                }
+            }
+        } catch (IOException e) {
+            subscription.cancel();
+            closeChannel();
+            result.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // the partial file is kept, so the next attempt can resume from where this one stopped
+        closeChannel();
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (result.isDone()) {
+            return;
+        }
+
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        var hex = HexFormat.of();
+        result.complete(new Digests(hex.formatHex(sha1.digest()), hex.formatHex(sha256.digest())));
+    }
+
+    @Override
+    public CompletionStage<Digests> getBody() {
+        return result;
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    static Digests digestsOf(Path file) throws IOException {
+        var sha1 = digestOf("SHA-1");
+        var sha256 = digestOf("SHA-256");
+        update(sha1, sha256, file);
+
+        var hex = HexFormat.of();
+        return new Digests(hex.formatHex(sha1.digest()), hex.formatHex(sha256.digest()));
+    }
+
+    private static void update(MessageDigest sha1, MessageDigest sha256, Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            var buffer = new byte[64 * 1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                sha1.update(buffer, 0, read);
+                sha256.update(buffer, 0, read);
+            }
+        }
+    }
+
+    private static MessageDigest digestOf(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
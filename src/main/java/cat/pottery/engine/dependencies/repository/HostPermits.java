@@ -0,0 +1,205 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies.repository;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+// the number of concurrent requests to each host adapts to how it answers: it grows by one every round of requests
+// answered about as fast as the fastest ones seen, shrinks when the answers start to queue up, and halves when the
+// host is overloaded
+public final class HostPermits {
+    public record HostStatistics(String host, int limit, int lowestLimit, int highestLimit, long requests, long overloads, double requestsPerSecond) {}
+
+    private static final int MAX_LIMIT_FACTOR = 4;
+
+    private final int initialLimit;
+    private final int maxLimit;
+    private final Map<String, Limit> limitsByHost;
+
+    public HostPermits(int permitsPerHost) {
+        this(permitsPerHost, permitsPerHost * MAX_LIMIT_FACTOR);
+    }
+
+    public HostPermits(int initialLimit, int maxLimit) {
+        this.initialLimit = Math.max(1, initialLimit);
+        this.maxLimit = Math.max(this.initialLimit, maxLimit);
+        this.limitsByHost = new ConcurrentHashMap<>();
+    }
+
+    public <T> CompletableFuture<T> withPermit(URI uri, Function<Permit, CompletableFuture<T>> fetch) {
+        var host = hostOf(uri);
+        var limit = limitsByHost.computeIfAbsent(host, ignored -> new Limit(host, initialLimit, maxLimit));
+        try {
+            limit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        var permit = new Permit(limit);
+        try {
+            return fetch.apply(permit).whenComplete((result, error) -> permit.release(error));
+        } catch (Throwable e) {
+            permit.release(e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public List<HostStatistics> statistics() {
+        return limitsByHost.values().stream()
+                .map(Limit::statistics)
+                .sorted(Comparator.comparing(HostStatistics::host))
+                .toList();
+    }
+
+    private String hostOf(URI uri) {
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    public static final class Permit {
+        private final Limit limit;
+        private long latencyNanos;
+        private boolean overloaded;
+
+        private Permit(Limit limit) {
+            this.limit = limit;
+            this.latencyNanos = -1;
+        }
+
+        // the latency is the time until the response headers arrive, so it does not depend on the size of the file
+        public synchronized void responded(int statusCode, long latencyNanos) {
+            this.latencyNanos = latencyNanos;
+            this.overloaded = statusCode == 429 || statusCode / 100 == 5;
+        }
+
+        private synchronized void release(Throwable error) {
+            var cause = error instanceof CompletionException ? error.getCause() : error;
+            // a dropped connection or a timeout is how most overloaded hosts answer
+            limit.release(latencyNanos, overloaded || cause instanceof IOException);
+        }
+    }
+
+    private static final class Limit {
+        private static final double LATENCY_SMOOTHING = 0.2;
+        private static final double BASELINE_DRIFT = 0.01;
+        private static final double QUEUEING_RATIO = 2.0;
+        private static final double QUEUEING_BACKOFF = 0.9;
+        private static final double OVERLOAD_BACKOFF = 0.5;
+
+        private final String host;
+        private final int maxLimit;
+        private final ReentrantLock lock;
+        private final Condition available;
+
+        private double limit;
+        private int inFlight;
+        private int lowestLimit;
+        private int highestLimit;
+        private double baselineNanos;
+        private double smoothedNanos;
+        private long lastDecreaseNanos;
+        private long requests;
+        private long overloads;
+        private long firstRequestNanos;
+        private long lastResponseNanos;
+
+        Limit(String host, int initialLimit, int maxLimit) {
+            this.host = host;
+            this.maxLimit = maxLimit;
+            this.lock = new ReentrantLock(true);
+            this.available = lock.newCondition();
+            this.limit = initialLimit;
+            this.lowestLimit = initialLimit;
+            this.highestLimit = initialLimit;
+            this.baselineNanos = -1;
+            this.smoothedNanos = -1;
+        }
+
+        void acquire() throws InterruptedException {
+            lock.lock();
+            try {
+                while (inFlight >= (int) limit) {
+                    available.await();
+                }
+
+                inFlight++;
+                if (firstRequestNanos == 0) {
+                    firstRequestNanos = System.nanoTime();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(long latencyNanos, boolean overloaded) {
+            lock.lock();
+            try {
+                var now = System.nanoTime();
+                inFlight--;
+                requests++;
+                lastResponseNanos = now;
+
+                if (overloaded) {
+                    overloads++;
+                    decrease(OVERLOAD_BACKOFF, now);
+                } else if (latencyNanos >= 0) {
+                    adapt(latencyNanos, now);
+                }
+
+                lowestLimit = Math.min(lowestLimit, (int) limit);
+                highestLimit = Math.max(highestLimit, (int) limit);
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void adapt(long latencyNanos, long now) {
+            // the baseline is the fastest answer, and slowly follows the latency up in case the network changed
+            baselineNanos = baselineNanos < 0 || latencyNanos < baselineNanos ? latencyNanos : baselineNanos + BASELINE_DRIFT * (latencyNanos - baselineNanos);
+            smoothedNanos = smoothedNanos < 0 ? latencyNanos : smoothedNanos + LATENCY_SMOOTHING * (latencyNanos - smoothedNanos);
+
+            if (smoothedNanos > baselineNanos * QUEUEING_RATIO) {
+                decrease(QUEUEING_BACKOFF, now);
+            } else {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+
+        private void decrease(double backoff, long now) {
+            // the requests in flight when the host slowed down bring the same news, so it only backs off once per round trip
+            if (lastDecreaseNanos != 0 && now - lastDecreaseNanos < Math.max(smoothedNanos, 0)) {
+                return;
+            }
+
+            limit = Math.max(1, limit * backoff);
+            lastDecreaseNanos = now;
+        }
+
+        HostStatistics statistics() {
+            lock.lock();
+            try {
+                var elapsedNanos = lastResponseNanos - firstRequestNanos;
+                var requestsPerSecond = elapsedNanos <= 0 ? 0 : requests / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+                return new HostStatistics(host, (int) limit, lowestLimit, highestLimit, requests, overloads, requestsPerSecond);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies.repository;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// a configured repository, and how well it has been answering during this resolution
+final class Repository {
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final int UNHEALTHY_AFTER_ERRORS = 3;
+    private static final long ERROR_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final URI uri;
+    private final LongAdder requests;
+    private final LongAdder notFound;
+    private final LongAdder errors;
+    private final AtomicInteger consecutiveErrors;
+    private double latencyNanos;
+
+    Repository(URI uri) {
+        this.uri = uri.toString().endsWith("/") ? uri : URI.create(uri + "/");
+        this.requests = new LongAdder();
+        this.notFound = new LongAdder();
+        this.errors = new LongAdder();
+        this.consecutiveErrors = new AtomicInteger(0);
+        this.latencyNanos = -1;
+    }
+
+    URI uri() {
+        return uri;
+    }
+
+    URI resolve(String relativePath) {
+        return uri.resolve(relativePath);
+    }
+
+    boolean isLocal() {
+        return "file".equals(uri.getScheme());
+    }
+
+    void recordRequest() {
+        requests.increment();
+    }
+
+    synchronized void recordLatency(long nanos) {
+        // exponentially weighted, so a repository that becomes slow is ranked down after a few requests
+        latencyNanos = latencyNanos < 0 ? nanos : latencyNanos + LATENCY_SMOOTHING * (nanos - latencyNanos);
+    }
+
+    void recordSuccess() {
+        consecutiveErrors.set(0);
+    }
+
+    void recordNotFound() {
+        // a mirror that does not have an artifact is still healthy
+        notFound.increment();
+        consecutiveErrors.set(0);
+    }
+
+    void recordError() {
+        errors.increment();
+        consecutiveErrors.incrementAndGet();
+        // errors are usually answered fast, they must not make a failing repository look like the fastest one
+        recordLatency(ERROR_PENALTY_NANOS);
+    }
+
+    boolean isHealthy() {
+        return consecutiveErrors.get() < UNHEALTHY_AFTER_ERRORS;
+    }
+
+    synchronized double expectedLatencyNanos() {
+        // repositories without measurements are tried first, in the order they are configured
+        return Math.max(latencyNanos, 0);
+    }
+
+    RepositoryClient.RepositoryStatistics statistics() {
+        return new RepositoryClient.RepositoryStatistics(
+                uri,
+                requests.sum(),
+                notFound.sum(),
+                errors.sum(),
+                TimeUnit.NANOSECONDS.toMillis((long) expectedLatencyNanos())
+        );
+    }
+}
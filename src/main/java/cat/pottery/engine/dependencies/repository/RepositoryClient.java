@@ -0,0 +1,485 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies.repository;
+
+import cat.pottery.telemetry.Log;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class RepositoryClient implements AutoCloseable {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private record Checksum(String extension, String value) {
+        static Checksum parse(String extension, String content) {
+            // checksum files can be followed by the file name, like the output of sha1sum
+            return new Checksum(extension, content.trim().split("\\s+")[0].toLowerCase());
+        }
+
+        boolean matches(ChecksummingFileSubscriber.Digests digests) {
+            return value.equals(extension.equals("sha1") ? digests.sha1() : digests.sha256());
+        }
+    }
+
+    public record Statistics(
+            long requests,
+            long failedRequests,
+            long resumedDownloads,
+            long notModified,
+            long checksumMismatches,
+            long http2Requests,
+            long http11Requests,
+            // the HTTP client does not expose its connections, only the origins answering over HTTP/2 are known
+            int http2Origins,
+            int peakRequestsInFlight,
+            List<RepositoryStatistics> repositories,
+            List<HostPermits.HostStatistics> hosts
+    ) {}
+
+    public record Validators(Optional<String> etag, Optional<String> lastModified) {
+        public static final Validators NONE = new Validators(Optional.empty(), Optional.empty());
+    }
+
+    public record Fetched(Path path, boolean modified, Validators validators) {}
+
+    private record Transfer(Optional<ChecksummingFileSubscriber.Digests> digests, Validators validators) {}
+
+    public record RepositoryStatistics(URI uri, long requests, long notFound, long errors, long latencyMillis) {}
+
+    // a download writes to the .part file next to its target, so only one download of a target runs at the same time,
+    // even across clients, like the ones of the production and test resolutions, and the others wait for it
+    private static final Map<Path, CompletableFuture<Fetched>> DOWNLOADS_IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private final List<Repository> repositories;
+    private final HostPermits hostPermits;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final boolean offline;
+
+    private final LongAdder requests;
+    private final LongAdder failedRequests;
+    private final LongAdder resumedDownloads;
+    private final LongAdder notModified;
+    private final LongAdder checksumMismatches;
+    private final LongAdder http2Requests;
+    private final LongAdder http11Requests;
+    private final Map<String, Boolean> http2Origins;
+    private final AtomicInteger requestsInFlight;
+    private final AtomicInteger peakRequestsInFlight;
+
+    public RepositoryClient(List<URI> repositories, HostPermits hostPermits) {
+        this(repositories, hostPermits, false);
+    }
+
+    // an offline client has no HTTP client at all, so it is impossible for it to open a connection
+    public RepositoryClient(List<URI> repositories, HostPermits hostPermits, boolean offline) {
+        this.repositories = repositories.stream().map(Repository::new).toList();
+        this.hostPermits = hostPermits;
+        this.offline = offline;
+        if (offline) {
+            this.executor = null;
+            this.httpClient = null;
+        } else {
+            this.executor = Executors.newVirtualThreadPerTaskExecutor();
+            // a single client for the whole resolution, so HTTP/2 connections and TLS sessions are shared by all requests
+            this.httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .executor(executor)
+                    .build();
+        }
+
+        this.requests = new LongAdder();
+        this.failedRequests = new LongAdder();
+        this.resumedDownloads = new LongAdder();
+        this.notModified = new LongAdder();
+        this.checksumMismatches = new LongAdder();
+        this.http2Requests = new LongAdder();
+        this.http11Requests = new LongAdder();
+        this.http2Origins = new ConcurrentHashMap<>();
+        this.requestsInFlight = new AtomicInteger(0);
+        this.peakRequestsInFlight = new AtomicInteger(0);
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    public URI uriOf(String relativePath) {
+        return rankedRepositories().get(0).resolve(relativePath);
+    }
+
+    public CompletableFuture<Path> download(String relativePath, Path target) {
+        return download(relativePath, target, Optional.empty()).thenApply(Fetched::path);
+    }
+
+    // with validators of the existing target, the repository can answer that it did not change instead of sending it again
+    public CompletableFuture<Fetched> download(String relativePath, Path target, Optional<Validators> validators) {
+        if (offline) {
+            return CompletableFuture.failedFuture(RepositoryException.offline(relativePath));
+        }
+
+        try {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        var key = target.toAbsolutePath().normalize();
+        var download = new CompletableFuture<Fetched>();
+        var inFlight = DOWNLOADS_IN_FLIGHT.putIfAbsent(key, download);
+        if (inFlight != null) {
+            return inFlight.copy();
+        }
+
+        var conditional = Files.exists(target) ? validators : Optional.<Validators>empty();
+        downloadFrom(rankedRepositories(), 0, relativePath, target, conditional).whenComplete((fetched, error) -> {
+            DOWNLOADS_IN_FLIGHT.remove(key, download);
+            if (error != null) {
+                download.completeExceptionally(error);
+            } else {
+                download.complete(fetched);
+            }
+        });
+
+        return download;
+    }
+
+    private List<Repository> rankedRepositories() {
+        return repositories.stream()
+                .sorted(Comparator.comparing((Repository repository) -> !repository.isHealthy()).thenComparingDouble(Repository::expectedLatencyNanos))
+                .toList();
+    }
+
+    private CompletableFuture<Fetched> downloadFrom(List<Repository> candidates, int index, String relativePath, Path target, Optional<Validators> conditional) {
+        var repository = candidates.get(index);
+        return downloadFrom(repository, relativePath, target, conditional).exceptionallyCompose(error -> {
+            var cause = error instanceof CompletionException ? error.getCause() : error;
+            if (index + 1 >= candidates.size()) {
+                if (cause instanceof RepositoryException) {
+                    // keep partial files only when they can be resumed later
+                    deleteQuietly(target.resolveSibling(target.getFileName() + ".part"));
+                }
+
+                return CompletableFuture.failedFuture(cause);
+            }
+
+            if (!(cause instanceof RepositoryException repositoryException && repositoryException.isNotFound())) {
+                Log.getInstance().warn("Could not fetch %s from %s, trying %s.", relativePath, repository.uri(), candidates.get(index + 1).uri());
+            }
+
+            return downloadFrom(candidates, index + 1, relativePath, target, conditional);
+        });
+    }
+
+    private CompletableFuture<Fetched> downloadFrom(Repository repository, String relativePath, Path target, Optional<Validators> conditional) {
+        var uri = repository.resolve(relativePath);
+        var partialFile = target.resolveSibling(target.getFileName() + ".part");
+
+        if (repository.isLocal()) {
+            return copyInto(repository, uri, partialFile, conditional).thenApply(transfer -> {
+                if (transfer.digests().isEmpty()) {
+                    return new Fetched(target, false, transfer.validators());
+                }
+
+                return verifyAndMove(uri, partialFile, target, transfer.digests().get(), localChecksumOf(uri), transfer.validators());
+            });
+        }
+
+        if (conditional.isPresent()) {
+            // most revalidations end in a 304, so the checksum is only fetched when there is a new body to verify
+            return downloadInto(repository, uri, partialFile, conditional, 1).thenCompose(transfer -> {
+                if (transfer.digests().isEmpty()) {
+                    return CompletableFuture.completedFuture(new Fetched(target, false, transfer.validators()));
+                }
+
+                return checksumOf(repository, uri).thenApply(checksum -> verifyAndMove(uri, partialFile, target, transfer.digests().get(), checksum, transfer.validators()));
+            });
+        }
+
+        var expectedChecksum = checksumOf(repository, uri);
+        var download = downloadInto(repository, uri, partialFile, conditional, 1);
+
+        // wait for both, so a failed checksum never lets the next repository write while this body is still streaming
+        return CompletableFuture.allOf(download, expectedChecksum).thenApply(ignored -> {
+            var transfer = download.join();
+            return verifyAndMove(uri, partialFile, target, transfer.digests().orElseThrow(), expectedChecksum.join(), transfer.validators());
+        });
+    }
+
+    private Fetched verifyAndMove(URI uri, Path partialFile, Path target, ChecksummingFileSubscriber.Digests digests, Optional<Checksum> checksum, Validators validators) {
+        if (checksum.isPresent() && !checksum.get().matches(digests)) {
+            checksumMismatches.increment();
+            deleteQuietly(partialFile);
+            throw new RepositoryException("The checksum of %s does not match the %s published by the repository.".formatted(uri, checksum.get().extension()));
+        }
+
+        try {
+            // the file only shows up in its final place once it is complete and verified
+            Files.move(partialFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new Fetched(target, true, validators);
+    }
+
+    private CompletableFuture<Transfer> copyInto(Repository repository, URI uri, Path partialFile, Optional<Validators> conditional) {
+        return CompletableFuture.supplyAsync(() -> {
+            requests.increment();
+            repository.recordRequest();
+
+            var started = System.nanoTime();
+            var source = Path.of(uri);
+            if (!Files.isRegularFile(source)) {
+                repository.recordNotFound();
+                failedRequests.increment();
+                throw new RepositoryException("Could not fetch %s, the file does not exist.".formatted(uri), 404);
+            }
+
+            try {
+                var lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(Files.getLastModifiedTime(source).toInstant().atZone(ZoneOffset.UTC));
+                var validators = new Validators(Optional.empty(), Optional.of(lastModified));
+                if (conditional.flatMap(Validators::lastModified).filter(lastModified::equals).isPresent()) {
+                    repository.recordSuccess();
+                    notModified.increment();
+                    return new Transfer(Optional.empty(), validators);
+                }
+
+                Files.copy(source, partialFile, StandardCopyOption.REPLACE_EXISTING);
+                repository.recordLatency(System.nanoTime() - started);
+                repository.recordSuccess();
+                return new Transfer(Optional.of(ChecksummingFileSubscriber.digestsOf(partialFile)), validators);
+            } catch (IOException e) {
+                repository.recordError();
+                failedRequests.increment();
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    private CompletableFuture<Transfer> downloadInto(Repository repository, URI uri, Path partialFile, Optional<Validators> conditional, int attempt) {
+        return hostPermits.withPermit(uri, permit -> {
+            requests.increment();
+            repository.recordRequest();
+            peakRequestsInFlight.accumulateAndGet(requestsInFlight.incrementAndGet(), Math::max);
+
+            var started = System.nanoTime();
+            var downloadedBytes = sizeOf(partialFile);
+            var request = HttpRequest.newBuilder().GET().uri(uri);
+            if (downloadedBytes > 0) {
+                request.header("Range", "bytes=%d-".formatted(downloadedBytes));
+            } else if (conditional.isPresent()) {
+                conditional.get().etag().ifPresent(etag -> request.header("If-None-Match", etag));
+                conditional.get().lastModified().ifPresent(lastModified -> request.header("If-Modified-Since", lastModified));
+            }
+
+            return httpClient.sendAsync(request.build(), response -> {
+                        var latency = System.nanoTime() - started;
+                        repository.recordLatency(latency);
+                        permit.responded(response.statusCode(), latency);
+
+                        if (response.statusCode() == 206) {
+                            if (!resumesFrom(response, downloadedBytes)) {
+                                return HttpResponse.BodySubscribers.replacing(null);
+                            }
+
+                            resumedDownloads.increment();
+                            return new ChecksummingFileSubscriber(partialFile, true);
+                        }
+
+                        if (response.statusCode() / 100 == 2) {
+                            return new ChecksummingFileSubscriber(partialFile, false);
+                        }
+
+                        return HttpResponse.BodySubscribers.replacing(null);
+                    })
+                    .whenComplete((response, error) -> requestsInFlight.decrementAndGet())
+                    .thenApply(response -> {
+                        trackProtocolOf(response);
+
+                        if (response.statusCode() == 304 && conditional.isPresent()) {
+                            repository.recordSuccess();
+                            notModified.increment();
+                            return new Transfer(Optional.empty(), validatorsOf(response, conditional.get()));
+                        }
+
+                        // a range that is not the one requested cannot be appended to the partial file either
+                        if (response.statusCode() == 416 || response.statusCode() == 206 && response.body() == null) {
+                            // the partial file does not match the remote file anymore, start again from scratch
+                            deleteQuietly(partialFile);
+                            throw new CompletionException(new IOException("The repository could not resume %s.".formatted(uri)));
+                        }
+
+                        if (response.statusCode() / 100 != 2) {
+                            failedRequests.increment();
+                            if (response.statusCode() == 404) {
+                                repository.recordNotFound();
+                            } else {
+                                repository.recordError();
+                            }
+
+                            throw new RepositoryException("Could not fetch %s, the repository answered with HTTP %d.".formatted(uri, response.statusCode()), response.statusCode());
+                        }
+
+                        repository.recordSuccess();
+                        return new Transfer(Optional.of(response.body()), validatorsOf(response, Validators.NONE));
+                    });
+        }).exceptionallyCompose(error -> {
+            var cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause instanceof IOException) {
+                repository.recordError();
+                if (attempt < MAX_ATTEMPTS) {
+                    Log.getInstance().warn("Download of %s was interrupted, resuming it (attempt %d of %d).", uri, attempt + 1, MAX_ATTEMPTS);
+                    return downloadInto(repository, uri, partialFile, conditional, attempt + 1);
+                }
+
+                failedRequests.increment();
+            }
+
+            return CompletableFuture.failedFuture(cause);
+        });
+    }
+
+    private Validators validatorsOf(HttpResponse<?> response, Validators previous) {
+        return new Validators(
+                response.headers().firstValue("ETag").or(previous::etag),
+                response.headers().firstValue("Last-Modified").or(previous::lastModified)
+        );
+    }
+
+    private boolean resumesFrom(HttpResponse.ResponseInfo response, long downloadedBytes) {
+        return downloadedBytes > 0 && response.headers().firstValue("Content-Range")
+                .map(range -> range.startsWith("bytes %d-".formatted(downloadedBytes)))
+                .orElse(false);
+    }
+
+    private Optional<Checksum> localChecksumOf(URI uri) {
+        for (var extension : List.of("sha1", "sha256")) {
+            try {
+                var checksum = Files.readString(Path.of(URI.create(uri + "." + extension)));
+                if (!checksum.isBlank()) {
+                    return Optional.of(Checksum.parse(extension, checksum));
+                }
+            } catch (IOException e) {
+                // there is no checksum file with this extension
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private CompletableFuture<Optional<Checksum>> checksumOf(Repository repository, URI uri) {
+        return fetchChecksum(repository, uri, "sha1").thenCompose(sha1 -> sha1.isPresent()
+                ? CompletableFuture.completedFuture(sha1)
+                : fetchChecksum(repository, uri, "sha256"));
+    }
+
+    private CompletableFuture<Optional<Checksum>> fetchChecksum(Repository repository, URI uri, String extension) {
+        var checksumUri = URI.create(uri + "." + extension);
+        return hostPermits.withPermit(checksumUri, permit -> {
+            requests.increment();
+            repository.recordRequest();
+
+            var started = System.nanoTime();
+            var request = HttpRequest.newBuilder().GET().uri(checksumUri).build();
+            return httpClient.sendAsync(request, response -> {
+                        var latency = System.nanoTime() - started;
+                        repository.recordLatency(latency);
+                        permit.responded(response.statusCode(), latency);
+                        return HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+                    })
+                    .thenApply(response -> {
+                        trackProtocolOf(response);
+                        if (response.statusCode() == 404 || (response.statusCode() / 100 == 2 && response.body().isBlank())) {
+                            return Optional.<Checksum>empty();
+                        }
+
+                        if (response.statusCode() / 100 != 2) {
+                            // the artifact cannot be verified, so it is not taken from this repository
+                            repository.recordError();
+                            throw new RepositoryException("Could not fetch %s, the repository answered with HTTP %d.".formatted(checksumUri, response.statusCode()), response.statusCode());
+                        }
+
+                        return Optional.of(Checksum.parse(extension, response.body()));
+                    });
+        });
+    }
+
+    private long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void trackProtocolOf(HttpResponse<?> response) {
+        if (response.version() == HttpClient.Version.HTTP_2) {
+            http2Requests.increment();
+            var uri = response.uri();
+            http2Origins.putIfAbsent(uri.getScheme() + "://" + uri.getAuthority(), true);
+        } else {
+            http11Requests.increment();
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not delete incomplete download %s.", path);
+        }
+    }
+
+    public Statistics statistics() {
+        return new Statistics(
+                requests.sum(),
+                failedRequests.sum(),
+                resumedDownloads.sum(),
+                notModified.sum(),
+                checksumMismatches.sum(),
+                http2Requests.sum(),
+                http11Requests.sum(),
+                http2Origins.size(),
+                peakRequestsInFlight.get(),
+                repositories.stream().map(Repository::statistics).toList(),
+                hostPermits.statistics()
+        );
+    }
+
+    @Override
+    public void close() {
+        if (offline) {
+            return;
+        }
+
+        httpClient.close();
+        executor.close();
+    }
+}
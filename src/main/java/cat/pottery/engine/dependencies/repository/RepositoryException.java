@@ -0,0 +1,47 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies.repository;
+
+import java.io.Serial;
+
+public final class RepositoryException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final boolean offline;
+
+    public RepositoryException(String message) {
+        this(message, 0);
+    }
+
+    public RepositoryException(String message, int statusCode) {
+        this(message, statusCode, false);
+    }
+
+    private RepositoryException(String message, int statusCode, boolean offline) {
+        super(message);
+        this.statusCode = statusCode;
+        this.offline = offline;
+    }
+
+    public static RepositoryException offline(String relativePath) {
+        return new RepositoryException("%s is not in the local cache, and the resolver is offline.".formatted(relativePath), 0, true);
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    public boolean isNotFound() {
+        return statusCode == 404;
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.engine.dependencies.store;
+
+import cat.pottery.telemetry.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public final class ArtifactStore {
+    public record Statistics(long reused, long stored, long copies) {}
+
+    private final Path root;
+    private final LongAdder reused;
+    private final LongAdder stored;
+    private final LongAdder copies;
+
+    public ArtifactStore(Path root) {
+        this.root = root;
+        this.reused = new LongAdder();
+        this.stored = new LongAdder();
+        this.copies = new LongAdder();
+    }
+
+    public static ArtifactStore fromEnvironment() {
+        var location = System.getenv("POTTERY_STORE");
+        if (location != null && !location.isBlank()) {
+            return new ArtifactStore(Path.of(location));
+        }
+
+        return new ArtifactStore(Path.of(System.getProperty("user.home"), ".pottery", "store"));
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    // relativePath is the path of the file inside the repository, target is where the project expects it
+    public CompletableFuture<Path> fetch(String relativePath, Path target, Function<Path, CompletableFuture<Path>> download) {
+        var stored = storedObjectOf(relativePath);
+        if (stored.isPresent()) {
+            try {
+                linkInto(stored.get(), target);
+                reused.increment();
+                return CompletableFuture.completedFuture(target);
+            } catch (IOException e) {
+                Log.getInstance().warn("Could not reuse %s from the artifact store, downloading it again.", relativePath);
+            }
+        }
+
+        try {
+            // the target could be a link into the store, never write through it
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return download.apply(target).thenApply(downloaded -> {
+            store(relativePath, downloaded);
+            return downloaded;
+        });
+    }
+
+    public Optional<Long> sizeOf(String relativePath) {
+        return storedObjectOf(relativePath).flatMap(object -> {
+            try {
+                return Optional.of(Files.size(object));
+            } catch (IOException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    private Optional<Path> storedObjectOf(String relativePath) {
+        try {
+            var hash = Files.readString(indexOf(relativePath), StandardCharsets.US_ASCII).trim();
+            if (hash.length() != 64) {
+                return Optional.empty();
+            }
+
+            var object = objectOf(hash);
+            return Files.isRegularFile(object) ? Optional.of(object) : Optional.empty();
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void store(String relativePath, Path downloaded) {
+        try {
+            var hash = sha256Of(downloaded);
+            var object = objectOf(hash);
+
+            if (Files.isRegularFile(object)) {
+                // the same content was stored under another path, share it instead of keeping a second copy
+                linkInto(object, downloaded);
+            } else {
+                Files.createDirectories(object.getParent());
+                var temporary = temporaryNextTo(object);
+                if (!link(downloaded, temporary)) {
+                    Files.copy(downloaded, temporary, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(temporary, object, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                stored.increment();
+            }
+
+            var index = indexOf(relativePath);
+            Files.createDirectories(index.getParent());
+            var temporary = temporaryNextTo(index);
+            Files.writeString(temporary, hash, StandardCharsets.US_ASCII);
+            Files.move(temporary, index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Log.getInstance().warn("Could not add %s to the artifact store at %s.", relativePath, root);
+        }
+    }
+
+    private void linkInto(Path object, Path target) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        var temporary = temporaryNextTo(target);
+        if (!link(object, temporary)) {
+            // hardlinks do not work across file systems, so the store might be somewhere else
+            Files.copy(object, temporary, StandardCopyOption.REPLACE_EXISTING);
+            copies.increment();
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private boolean link(Path existing, Path link) {
+        try {
+            Files.deleteIfExists(link);
+            Files.createLink(link, existing);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private Path temporaryNextTo(Path path) {
+        return path.resolveSibling(path.getFileName() + "." + ProcessHandle.current().pid() + "-" + Thread.currentThread().threadId() + ".tmp");
+    }
+
+    private Path indexOf(String relativePath) {
+        return root.resolve("index").resolve(relativePath + ".sha256");
+    }
+
+    private Path objectOf(String hash) {
+        return root.resolve("objects").resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private String sha256Of(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            var digest = MessageDigest.getInstance("SHA-256");
+            var buffer = new byte[64 * 1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Statistics statistics() {
+        return new Statistics(reused.sum(), stored.sum(), copies.sum());
+    }
+}
@@ -12,15 +12,20 @@ import java.util.concurrent.atomic.AtomicReference;
 
 public record ArtifactDocument(
         Map<String, String> parameters,
-        Artifact artifact
+        Artifact artifact,
+        Resolver resolver
 ) {
+    public ArtifactDocument(Map<String, String> parameters, Artifact artifact) {
+        this(parameters, artifact, Resolver.defaults());
+    }
+
     public List<Dependency> resolvedDependencies() {
         return artifact.dependencies().stream().map(dependency -> {
             var depQn = new AtomicReference<>(dependency.qualifiedName());
 
             parameters.forEach((key, value) -> depQn.getAndUpdate(qn -> qn.replace("${" + key + "}", value)));
 
-            return new Dependency(dependency.scope(), depQn.get());
+            return new Dependency(dependency.scope(), depQn.get(), dependency.exclusions());
         }).toList();
     }
 
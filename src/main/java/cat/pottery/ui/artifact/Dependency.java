@@ -8,10 +8,17 @@ package cat.pottery.ui.artifact;
 
 import cat.pottery.engine.dependencies.maven.MavenDependency;
 
+import java.util.List;
+
 public record Dependency(
         Scope scope,
-        String qualifiedName
+        String qualifiedName,
+        List<String> exclusions
 ) {
+    public Dependency(Scope scope, String qualifiedName) {
+        this(scope, qualifiedName, List.of());
+    }
+
     public interface CanScopeToMaven {
         MavenDependency.Scope toMavenScope();
     }
@@ -26,6 +33,11 @@ public record Dependency(
             public MavenDependency.Scope toMavenScope() {
                 return MavenDependency.Scope.TEST;
             }
+        }, BOM {
+            @Override
+            public MavenDependency.Scope toMavenScope() {
+                return MavenDependency.Scope.IMPORT;
+            }
         };
     }
 
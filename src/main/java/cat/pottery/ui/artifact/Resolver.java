@@ -0,0 +1,69 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.ui.artifact;
+
+import java.net.URI;
+import java.util.List;
+
+public record Resolver(
+        Mode mode,
+        int concurrency,
+        List<URI> repositories,
+        SnapshotPolicy snapshots,
+        Conflicts conflicts,
+        boolean offline
+) {
+    public static final int DEFAULT_CONCURRENCY = 16;
+    public static final URI MAVEN_CENTRAL = URI.create("https://repo1.maven.org/maven2/");
+
+    public Resolver {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Resolver concurrency must be at least 1, but it is %d.".formatted(concurrency));
+        }
+
+        if (repositories.isEmpty()) {
+            throw new IllegalArgumentException("At least one repository is required.");
+        }
+
+        for (var repository : repositories) {
+            var scheme = repository.getScheme();
+            if (!"http".equals(scheme) && !"https".equals(scheme) && !"file".equals(scheme)) {
+                throw new IllegalArgumentException("Repository %s must be a http://, https:// or file:// URL.".formatted(repository));
+            }
+
+            if ("file".equals(scheme) && repository.isOpaque()) {
+                throw new IllegalArgumentException("Repository %s must be an absolute file:// URL.".formatted(repository));
+            }
+        }
+
+        repositories = List.copyOf(repositories);
+    }
+
+    public Resolver(Mode mode, int concurrency) {
+        this(mode, concurrency, List.of(MAVEN_CENTRAL), SnapshotPolicy.ALWAYS, Conflicts.HIGHEST, false);
+    }
+
+    public static Resolver defaults() {
+        return new Resolver(Mode.VIRTUAL, DEFAULT_CONCURRENCY);
+    }
+
+    public Resolver withConcurrency(int concurrency) {
+        return new Resolver(mode, concurrency, repositories, snapshots, conflicts, offline);
+    }
+
+    public Resolver withOffline(boolean offline) {
+        return new Resolver(mode, concurrency, repositories, snapshots, conflicts, offline);
+    }
+
+    public enum Mode {
+        PLATFORM, VIRTUAL
+    }
+
+    public enum Conflicts {
+        NEAREST, HIGHEST, FAIL
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.ui.artifact;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+public record SnapshotPolicy(Optional<Duration> updateInterval) {
+    public static final SnapshotPolicy ALWAYS = new SnapshotPolicy(Optional.of(Duration.ZERO));
+    public static final SnapshotPolicy DAILY = new SnapshotPolicy(Optional.of(Duration.ofDays(1)));
+    public static final SnapshotPolicy NEVER = new SnapshotPolicy(Optional.empty());
+
+    // same values as the updatePolicy of a Maven repository
+    public static SnapshotPolicy parse(String policy) {
+        var normalised = policy.trim().toLowerCase();
+        return switch (normalised) {
+            case "always" -> ALWAYS;
+            case "daily" -> DAILY;
+            case "never" -> NEVER;
+            default -> {
+                if (!normalised.startsWith("interval:")) {
+                    throw new IllegalArgumentException("Snapshot policy must be always, daily, never or interval:<minutes>, but it is %s.".formatted(policy));
+                }
+
+                yield new SnapshotPolicy(Optional.of(Duration.ofMinutes(Long.parseLong(normalised.substring("interval:".length())))));
+            }
+        };
+    }
+
+    public boolean isDue(Instant lastChecked, Instant now) {
+        return updateInterval.map(interval -> !lastChecked.plus(interval).isAfter(now)).orElse(false);
+    }
+}
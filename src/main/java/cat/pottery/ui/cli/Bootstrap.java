@@ -15,6 +15,11 @@ import static cat.pottery.ui.cli.command.CommandResolver.CMD_SPEC;
 
 public final class Bootstrap {
     public static void main(String[] args) {
+        run(args);
+    }
+
+    // the daemon runs every command it receives here too, so the process is only ended through Exit
+    public static void run(String[] args) {
         if (args.length < 1) {
             return;
         }
@@ -23,21 +28,21 @@ public final class Bootstrap {
         var parseResult = cmdLine.parseArgs(args);
         if (parseResult.isUsageHelpRequested()) {
             cmdLine.usage(cmdLine.getOut());
-            System.exit(cmdLine.getCommandSpec().exitCodeOnUsageHelp());
+            Exit.withStatus(cmdLine.getCommandSpec().exitCodeOnUsageHelp());
         } else if (parseResult.isVersionHelpRequested()) {
             cmdLine.printVersionHelp(cmdLine.getOut());
-            System.exit(cmdLine.getCommandSpec().exitCodeOnVersionHelp());
+            Exit.withStatus(cmdLine.getCommandSpec().exitCodeOnVersionHelp());
         }
 
         if (!parseResult.hasSubcommand()) {
             cmdLine.usage(cmdLine.getOut());
-            System.exit(cmdLine.getCommandSpec().exitCodeOnUsageHelp());
+            Exit.withStatus(cmdLine.getCommandSpec().exitCodeOnUsageHelp());
         }
 
         if (parseResult.subcommand().isUsageHelpRequested()) {
             var innerCmdLine = new CommandLine(parseResult.subcommand().commandSpec());
             innerCmdLine.usage(innerCmdLine.getOut());
-            System.exit(innerCmdLine.getCommandSpec().exitCodeOnUsageHelp());
+            Exit.withStatus(innerCmdLine.getCommandSpec().exitCodeOnUsageHelp());
         }
 
         Log.getInstance().info("Running pottery version %s", Toolchain.systemDefault().potteryVersion());
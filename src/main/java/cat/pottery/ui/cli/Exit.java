@@ -0,0 +1,45 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.ui.cli;
+
+import java.io.Serial;
+
+// commands end the process with a status, unless they run in the daemon, which needs to survive them and send the
+// status to the client instead
+public final class Exit {
+    public static final class Requested extends RuntimeException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        private Requested(int status) {
+            super("Exit with status " + status, null, false, false);
+            this.status = status;
+        }
+
+        public int status() {
+            return status;
+        }
+    }
+
+    private static volatile boolean runningInDaemon = false;
+
+    private Exit() {}
+
+    public static void runningInDaemon() {
+        runningInDaemon = true;
+    }
+
+    public static void withStatus(int status) {
+        if (runningInDaemon) {
+            throw new Requested(status);
+        }
+
+        System.exit(status);
+    }
+}
@@ -15,10 +15,12 @@ public final class CommandResolver {
             case "watch" -> new WatchCommand();
             case "package" -> new PackageCommand();
             case "test" -> new TestCommand();
+            case "fetch" -> new FetchCommand();
             case "idea" -> new IdeaCommand();
             case "init" -> new InitCommand();
             case "clean" -> new CleanCommand();
             case "purge" -> new PurgeCommand();
+            case "daemon" -> new DaemonCommand();
             default -> new PackageCommand();
         };
     }
@@ -26,6 +28,26 @@ public final class CommandResolver {
     private static CommandLine.Model.CommandSpec PACKAGE_SPEC = CommandLine.Model.CommandSpec.create()
             .usageMessage(new CommandLine.Model.UsageMessageSpec()
                     .description("Produces a package for each `produces` section"))
+            .addOption(CommandLine.Model.OptionSpec.builder("--resolver-concurrency")
+                    .type(int.class)
+                    .paramLabel("CONCURRENCY")
+                    .description("Initial number of concurrent downloads per repository host, adapted up to 4 times that value to how each host answers. Overrides `resolver.concurrency` in pottery.yaml.")
+                    .build())
+            .addOption(CommandLine.Model.OptionSpec.builder("--offline")
+                    .description("Resolve dependencies only from the local cache, without any network access. Fails listing the missing dependencies.")
+                    .build())
+            .addOption(CommandLine.Model.OptionSpec.builder("--help").usageHelp(true).build());
+    private static CommandLine.Model.CommandSpec FETCH_SPEC = CommandLine.Model.CommandSpec.create()
+            .usageMessage(new CommandLine.Model.UsageMessageSpec()
+                    .description("Resolves and downloads the dependencies of all scopes into the `.pottery` folder, without building anything."))
+            .addOption(CommandLine.Model.OptionSpec.builder("--resolver-concurrency")
+                    .type(int.class)
+                    .paramLabel("CONCURRENCY")
+                    .description("Initial number of concurrent downloads per repository host, adapted up to 4 times that value to how each host answers. Overrides `resolver.concurrency` in pottery.yaml.")
+                    .build())
+            .addOption(CommandLine.Model.OptionSpec.builder("--offline")
+                    .description("Resolve dependencies only from the local cache, without any network access. Fails listing the missing dependencies.")
+                    .build())
             .addOption(CommandLine.Model.OptionSpec.builder("--help").usageHelp(true).build());
     private static CommandLine.Model.CommandSpec IDEA_SPEC = CommandLine.Model.CommandSpec.create()
             .usageMessage(new CommandLine.Model.UsageMessageSpec()
@@ -87,6 +109,14 @@ public final class CommandResolver {
             .addOption(CommandLine.Model.OptionSpec.builder("-x", "--strict")
                     .description("Strict mode. Forces failure when there are skipped tests.")
                     .build())
+            .addOption(CommandLine.Model.OptionSpec.builder("--resolver-concurrency")
+                    .type(int.class)
+                    .paramLabel("CONCURRENCY")
+                    .description("Initial number of concurrent downloads per repository host, adapted up to 4 times that value to how each host answers. Overrides `resolver.concurrency` in pottery.yaml.")
+                    .build())
+            .addOption(CommandLine.Model.OptionSpec.builder("--offline")
+                    .description("Resolve dependencies only from the local cache, without any network access. Fails listing the missing dependencies.")
+                    .build())
             .addOption(CommandLine.Model.OptionSpec.builder("--help").usageHelp(true).build());
 
     private static final CommandLine.Model.CommandSpec WATCH_SPEC = CommandLine.Model.CommandSpec.create()
@@ -109,16 +139,25 @@ public final class CommandResolver {
             .addSubcommand("package", PACKAGE_SPEC)
             .addSubcommand("test", TEST_SPEC)
             .addOption(CommandLine.Model.OptionSpec.builder("--help").usageHelp(true).build());
+    private static final CommandLine.Model.CommandSpec DAEMON_SPEC = CommandLine.Model.CommandSpec.create()
+            .usageMessage(new CommandLine.Model.UsageMessageSpec()
+                    .description("Runs a daemon for the project in the current directory that keeps the compiler and the dependency graph warm between builds. pottery.sh sends commands to it when POTTERY_DAEMON=1."))
+            .addOption(CommandLine.Model.OptionSpec.builder("--stop")
+                    .description("Stops the daemon of the project in the current directory.")
+                    .build())
+            .addOption(CommandLine.Model.OptionSpec.builder("--help").usageHelp(true).build());
     public static CommandLine.Model.CommandSpec CMD_SPEC = CommandLine.Model.CommandSpec.create()
             .name("./pottery.sh")
             .version(Toolchain.systemDefault().potteryVersion())
             .addSubcommand("watch", WATCH_SPEC)
             .addSubcommand("package", PACKAGE_SPEC)
             .addSubcommand("test", TEST_SPEC)
+            .addSubcommand("fetch", FETCH_SPEC)
             .addSubcommand("idea", IDEA_SPEC)
             .addSubcommand("init", INIT_SPEC)
             .addSubcommand("clean", CLEAN_SPEC)
             .addSubcommand("purge", PURGE_SPEC)
+            .addSubcommand("daemon", DAEMON_SPEC)
             .addOption(CommandLine.Model.OptionSpec.builder("--help").usageHelp(true).build())
             .addOption(CommandLine.Model.OptionSpec.builder("--version").versionHelp(true).build());
 }
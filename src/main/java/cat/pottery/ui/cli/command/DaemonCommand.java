@@ -0,0 +1,49 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.ui.cli.command;
+
+import cat.pottery.telemetry.Log;
+import cat.pottery.ui.cli.Exit;
+import cat.pottery.ui.daemon.DaemonClient;
+import cat.pottery.ui.daemon.DaemonProtocol;
+import cat.pottery.ui.daemon.DaemonServer;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+public final class DaemonCommand implements CliCommand {
+    @Override
+    public void execute(CommandLine.ParseResult parseResult) {
+        var projectDirectory = Path.of("").toAbsolutePath();
+        var socket = DaemonProtocol.socketOf(projectDirectory);
+
+        if (parseResult.hasMatchedOption("--stop")) {
+            var status = DaemonClient.forward(socket, projectDirectory, List.of("daemon", "--stop"), System.out, System.err);
+            if (status == DaemonProtocol.NO_DAEMON) {
+                Log.getInstance().info("No daemon is running for %s.", projectDirectory);
+            } else if (status != 0) {
+                Exit.withStatus(status);
+            }
+
+            return;
+        }
+
+        // only one daemon per project, a second one would take the socket of the first
+        if (DaemonClient.forward(socket, projectDirectory, List.of("daemon"), System.out, System.err) != DaemonProtocol.NO_DAEMON) {
+            return;
+        }
+
+        try {
+            new DaemonServer(projectDirectory, socket).run();
+        } catch (IOException e) {
+            Log.getInstance().error("Could not run the daemon on %s.", e, socket);
+            Exit.withStatus(1);
+        }
+    }
+}
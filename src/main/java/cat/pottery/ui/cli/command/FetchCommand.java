@@ -0,0 +1,64 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.ui.cli.command;
+
+import cat.pottery.engine.dependencies.DependencyResolutionException;
+import cat.pottery.engine.dependencies.DependencyResolver;
+import cat.pottery.engine.integrations.IDEAImlGenerator;
+import cat.pottery.telemetry.Log;
+import cat.pottery.telemetry.Timing;
+import cat.pottery.ui.cli.Exit;
+import cat.pottery.ui.parser.YamlArtifactFileParser;
+import cat.pottery.ui.parser.result.ArtifactFileParserResult;
+import picocli.CommandLine;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+
+public final class FetchCommand implements CliCommand {
+    private static final String TIMING_ID = "fetch-command";
+
+    @Override
+    public void execute(CommandLine.ParseResult parseResult) {
+        Timing.getInstance().start(TIMING_ID);
+        var result = new YamlArtifactFileParser().parse(Path.of("pottery.yaml"));
+        if (result instanceof ArtifactFileParserResult.Failure failure) {
+            failure.errors().forEach(error -> Log.getInstance().error("%s", error.message()));
+            Exit.withStatus(1);
+            return;
+        }
+
+        var artifactDoc = (ArtifactFileParserResult.Success) result;
+
+        var resolverSettings = artifactDoc.document().resolver();
+        resolverSettings = resolverSettings.withConcurrency(parseResult.matchedOptionValue("--resolver-concurrency", resolverSettings.concurrency()));
+        resolverSettings = resolverSettings.withOffline(parseResult.hasMatchedOption("--offline"));
+
+        // both scopes are resolved at the same time, and the downloads they have in common are only made once
+        var settings = resolverSettings;
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var testResolution = CompletableFuture.supplyAsync(() -> DependencyResolver.forScope(settings, true).fetchDependenciesOfArtifact(artifactDoc.document()), executor);
+            var resolution = CompletableFuture.supplyAsync(() -> DependencyResolver.forScope(settings, false).fetchDependenciesOfArtifact(artifactDoc.document()), executor);
+            CompletableFuture.allOf(testResolution, resolution).join();
+
+            // the test scope contains the production one, so the IDEA module gets every library
+            IDEAImlGenerator.getInstance().generateImlFileIfNecessary(testResolution.join());
+
+            var duration = Timing.getInstance().end(TIMING_ID);
+            Log.getInstance().info("Fetched %d dependencies (%d for testing) in %s.", resolution.join().size(), testResolution.join().size(), duration);
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof DependencyResolutionException resolutionException)) {
+                throw e;
+            }
+
+            Log.getInstance().error("%s", resolutionException.getMessage());
+            Exit.withStatus(1);
+        }
+    }
+}
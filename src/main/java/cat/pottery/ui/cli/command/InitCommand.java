@@ -8,6 +8,7 @@ package cat.pottery.ui.cli.command;
 
 import cat.pottery.telemetry.Log;
 import cat.pottery.telemetry.Timing;
+import cat.pottery.ui.cli.Exit;
 import cat.pottery.ui.artifact.Artifact;
 import cat.pottery.ui.artifact.ArtifactDocument;
 import cat.pottery.ui.artifact.Manifest;
@@ -84,7 +85,7 @@ public class InitCommand implements CliCommand {
                     );
         } catch (Throwable ex) {
             Log.getInstance().error("Could not initialise project.", ex);
-            System.exit(1);
+            Exit.withStatus(1);
         } finally {
             var duration = Timing.getInstance().end(TIMING_ID);
             Log.getInstance().info("Task ran in %s.", duration);
@@ -6,11 +6,11 @@
 
 package cat.pottery.ui.cli.command;
 
+import cat.pottery.engine.compiler.CompilationResult;
 import cat.pottery.engine.compiler.IncrementalCompiler;
+import cat.pottery.engine.dependencies.DependencyResolutionException;
 import cat.pottery.engine.dependencies.DependencyResolver;
-import cat.pottery.engine.dependencies.DownloadManager;
-import cat.pottery.engine.dependencies.PomContextRegistry;
-import cat.pottery.engine.dependencies.maven.MavenDependency;
+import cat.pottery.engine.dependencies.maven.DownloadedDependency;
 import cat.pottery.engine.output.ArtifactOutput;
 import cat.pottery.engine.output.container.ContainerArtifactOutput;
 import cat.pottery.engine.output.fatJar.FatJarArtifactOutput;
@@ -19,13 +19,13 @@ import cat.pottery.engine.output.nativeImage.NativeImageArtifactOutput;
 import cat.pottery.engine.toolchain.Toolchain;
 import cat.pottery.telemetry.Log;
 import cat.pottery.telemetry.Timing;
+import cat.pottery.ui.cli.Exit;
 import cat.pottery.ui.parser.YamlArtifactFileParser;
 import cat.pottery.ui.parser.result.ArtifactFileParserResult;
 import picocli.CommandLine;
 
 import java.nio.file.Path;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 public final class PackageCommand implements CliCommand {
 
@@ -35,24 +35,49 @@ public final class PackageCommand implements CliCommand {
     public void execute(CommandLine.ParseResult parseResult) {
         Timing.getInstance().start(TIMING_ID);
 
-        var queue = new ArrayBlockingQueue<MavenDependency>(128);
-        var pomContextRegistry = new PomContextRegistry(new ConcurrentHashMap<>(32, 1.2f, 4), new ConcurrentHashMap<>(32, 1.2f, 4));
-        var manager = new DownloadManager(queue, new ConcurrentHashMap<>(32, 1.2f, 4), 4, false, pomContextRegistry);
-
-        var dependencyResolver = new DependencyResolver(manager, queue, 4, pomContextRegistry);
         ArtifactFileParserResult result = new YamlArtifactFileParser().parse(Path.of("pottery.yaml"));
+        if (result instanceof ArtifactFileParserResult.Failure failure) {
+            failure.errors().forEach(error -> Log.getInstance().error("%s", error.message()));
+            if (!WatchCommand.IS_WATCHING) {
+                Exit.withStatus(1);
+            }
+
+            return;
+        }
+
         var artifactDoc = (ArtifactFileParserResult.Success) result;
 
-        var deps = dependencyResolver.downloadDependenciesOfArtifact(artifactDoc.document());
-        var compiler = new IncrementalCompiler(Toolchain.systemDefault());
-        var process = compiler.compileTree(artifactDoc.document(), Path.of("src", "main", "java").toAbsolutePath(), Path.of("target", "classes").toAbsolutePath(), deps);
+        var resolverSettings = artifactDoc.document().resolver();
+        resolverSettings = resolverSettings.withConcurrency(parseResult.matchedOptionValue("--resolver-concurrency", resolverSettings.concurrency()));
+        resolverSettings = resolverSettings.withOffline(parseResult.hasMatchedOption("--offline"));
 
-        if (process != null) {
-            try {
-                process.waitFor();
-            } catch (InterruptedException e) {
+        var dependencyResolver = DependencyResolver.forScope(resolverSettings, false);
 
+        List<DownloadedDependency> deps;
+        try {
+            deps = dependencyResolver.downloadDependenciesOfArtifact(artifactDoc.document());
+        } catch (DependencyResolutionException e) {
+            Log.getInstance().error("%s", e.getMessage());
+            if (!WatchCommand.IS_WATCHING) {
+                Exit.withStatus(1);
             }
+
+            return;
+        }
+
+        var compiler = IncrementalCompiler.getInstance();
+        // the daemon reuses the compiler, so only what this build did is reported
+        var cacheStatisticsBefore = compiler.buildCache().statistics();
+        var compilation = compiler.compileTree(artifactDoc.document(), Path.of("src", "main", "java").toAbsolutePath(), Path.of("target", "classes").toAbsolutePath(), deps);
+
+        if (compilation instanceof CompilationResult.Failed failed) {
+            Log.getInstance().error("Java compilation error.");
+            failed.errors().forEach(error -> Log.getInstance().error("%s", error));
+            if (!WatchCommand.IS_WATCHING) {
+                Exit.withStatus(1);
+            }
+
+            return;
         }
 
         for (var produces : artifactDoc.document().artifact().platform().produces()) {
@@ -73,6 +98,9 @@ public final class PackageCommand implements CliCommand {
             );
         }
 
+        var buildCache = compiler.buildCache();
+        var cacheStatistics = buildCache.statistics().since(cacheStatisticsBefore);
+        Log.getInstance().info("Build cache at %s: %d hits, %d misses, %d new entries.", buildCache.root(), cacheStatistics.hits(), cacheStatistics.misses(), cacheStatistics.stored());
 
         var duration = Timing.getInstance().end(TIMING_ID);
         Log.getInstance().info("All packages built in %s.", duration);
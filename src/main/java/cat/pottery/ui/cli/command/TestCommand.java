@@ -6,14 +6,14 @@
 
 package cat.pottery.ui.cli.command;
 
+import cat.pottery.engine.compiler.CompilationResult;
 import cat.pottery.engine.compiler.IncrementalCompiler;
+import cat.pottery.engine.dependencies.DependencyResolutionException;
 import cat.pottery.engine.dependencies.DependencyResolver;
-import cat.pottery.engine.dependencies.DownloadManager;
-import cat.pottery.engine.dependencies.PomContextRegistry;
-import cat.pottery.engine.dependencies.maven.MavenDependency;
-import cat.pottery.engine.toolchain.Toolchain;
+import cat.pottery.engine.dependencies.maven.DownloadedDependency;
 import cat.pottery.telemetry.Log;
 import cat.pottery.telemetry.Timing;
+import cat.pottery.ui.cli.Exit;
 import cat.pottery.ui.parser.YamlArtifactFileParser;
 import cat.pottery.ui.parser.result.ArtifactFileParserResult;
 import org.junit.platform.engine.DiscoverySelector;
@@ -38,8 +38,6 @@ import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.junit.platform.engine.discovery.ClassNameFilter.includeClassNamePatterns;
@@ -47,46 +45,62 @@ import static org.junit.platform.engine.discovery.ClassNameFilter.includeClassNa
 public class TestCommand implements CliCommand {
     private static final String TIMING_ID = "test-command";
 
+    // discovering the test engines is the slow part of creating a launcher, so the daemon only does it once
+    private static Launcher launcher;
+
     @Override
     public void execute(CommandLine.ParseResult parseResult) {
         Timing.getInstance().start(TIMING_ID);
-        var queue = new ArrayBlockingQueue<MavenDependency>(128);
-        var pomContextRegistry = new PomContextRegistry(new ConcurrentHashMap<>(32, 1.2f, 4), new ConcurrentHashMap<>(32, 1.2f, 4));
-        var manager = new DownloadManager(queue, new ConcurrentHashMap<>(32, 1.2f, 4), 4, true, pomContextRegistry);
+        var result = new YamlArtifactFileParser().parse(Path.of("pottery.yaml"));
+        if (result instanceof ArtifactFileParserResult.Failure failure) {
+            failure.errors().forEach(error -> Log.getInstance().error("%s", error.message()));
+            if (!WatchCommand.IS_WATCHING) {
+                Exit.withStatus(1);
+            }
 
-        var dependencyResolver = new DependencyResolver(manager, queue, 4, pomContextRegistry);
-        var artifactDoc = (ArtifactFileParserResult.Success) new YamlArtifactFileParser().parse(Path.of("pottery.yaml"));
+            return;
+        }
 
-        var deps = dependencyResolver.downloadDependenciesOfArtifact(artifactDoc.document());
-        var compiler = new IncrementalCompiler(Toolchain.systemDefault());
-        var targetClassesPath = Path.of("target", "classes");
-        var targetTestClassesPath = Path.of("target", "test-classes");
+        var artifactDoc = (ArtifactFileParserResult.Success) result;
 
-        var process = compiler.compileTree(artifactDoc.document(), Path.of("src", "main", "java").toAbsolutePath(), targetClassesPath.toAbsolutePath(), deps);
+        var resolverSettings = artifactDoc.document().resolver();
+        resolverSettings = resolverSettings.withConcurrency(parseResult.matchedOptionValue("--resolver-concurrency", resolverSettings.concurrency()));
+        resolverSettings = resolverSettings.withOffline(parseResult.hasMatchedOption("--offline"));
 
-        if (process != null) {
-            try {
-                process.waitFor();
-            } catch (InterruptedException e) {
+        var dependencyResolver = DependencyResolver.forScope(resolverSettings, true);
 
+        List<DownloadedDependency> deps;
+        try {
+            deps = dependencyResolver.downloadDependenciesOfArtifact(artifactDoc.document());
+        } catch (DependencyResolutionException e) {
+            Log.getInstance().error("%s", e.getMessage());
+            if (!WatchCommand.IS_WATCHING) {
+                Exit.withStatus(1);
             }
-        }
 
-        process = compiler.compileTree(artifactDoc.document(), Path.of("src", "test", "java").toAbsolutePath(), targetTestClassesPath.toAbsolutePath(), deps);
+            return;
+        }
 
-        if (process == null) {
-            Log.getInstance().info("Nothing to compile.");
-        } else {
-            try {
-                process.waitFor();
-            } catch (InterruptedException e) {
+        var compiler = IncrementalCompiler.getInstance();
+        var targetClassesPath = Path.of("target", "classes");
+        var targetTestClassesPath = Path.of("target", "test-classes");
 
-            }
+        var compilation = compiler.compileTree(artifactDoc.document(), Path.of("src", "main", "java").toAbsolutePath(), targetClassesPath.toAbsolutePath(), deps);
+        if (!(compilation instanceof CompilationResult.Failed)) {
+            compilation = compiler.compileTree(artifactDoc.document(), Path.of("src", "test", "java").toAbsolutePath(), targetTestClassesPath.toAbsolutePath(), deps);
+        }
 
-            if (process.exitValue() != 0) {
+        switch (compilation) {
+            case CompilationResult.UpToDate upToDate -> Log.getInstance().info("Nothing to compile.");
+            case CompilationResult.Compiled compiled -> {}
+            case CompilationResult.Restored restored -> {}
+            case CompilationResult.Failed failed -> {
                 Log.getInstance().error("Java compilation error.");
-                Log.getInstance().error(consumeStream(process.getErrorStream()));
-                Log.getInstance().error(consumeStream(process.getInputStream()));
+                failed.errors().forEach(error -> Log.getInstance().error("%s", error));
+                if (!WatchCommand.IS_WATCHING) {
+                    Exit.withStatus(1);
+                }
+
                 return;
             }
         }
@@ -101,27 +115,42 @@ public class TestCommand implements CliCommand {
             throw new RuntimeException(e);
         }
 
-        Thread.currentThread().setContextClassLoader(cl);
+        var originalClassLoader = Thread.currentThread().getContextClassLoader();
         SummaryGeneratingListener listener = new SummaryGeneratingListener();
-        LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
-                .selectors(allPackageSelector(targetTestClassesPath))
-                .filters(includeClassNamePatterns(".*Test"))
-                .build();
-        Launcher launcher = LauncherFactory.create(LauncherConfig.builder()
-                .build());
-        launcher.discover(request);
-        launcher.registerTestExecutionListeners(listener);
-        launcher.execute(request);
+        try {
+            Thread.currentThread().setContextClassLoader(cl);
+            LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
+                    .selectors(allPackageSelector(targetTestClassesPath))
+                    .filters(includeClassNamePatterns(".*Test"))
+                    .build();
+            launcher().execute(request, listener);
+        } finally {
+            // the daemon runs the tests again after the next change, with a new class loader for the new classes
+            Thread.currentThread().setContextClassLoader(originalClassLoader);
+            try {
+                cl.close();
+            } catch (IOException e) {
+                Log.getInstance().warn("Could not close the class loader of the tests: %s", e.getMessage());
+            }
+        }
 
         boolean failed = showTestResults(listener.getSummary(), parseResult);
         var duration = Timing.getInstance().end(TIMING_ID);
         Log.getInstance().info("Tests ran in %s.", duration);
 
         if (failed && !WatchCommand.IS_WATCHING) {
-            System.exit(1);
+            Exit.withStatus(1);
         }
     }
 
+    private static synchronized Launcher launcher() {
+        if (launcher == null) {
+            launcher = LauncherFactory.create(LauncherConfig.builder().build());
+        }
+
+        return launcher;
+    }
+
     private boolean showTestResults(TestExecutionSummary summary, CommandLine.ParseResult parseResult) {
         var log = Log.getInstance();
         var failed = false;
@@ -182,13 +211,4 @@ public class TestCommand implements CliCommand {
                 .toList();
 
     }
-
-    private String consumeStream(InputStream is) {
-        try {
-            return new String(is.readAllBytes());
-        } catch (IOException e) {
-            Log.getInstance().error("Could not read output from process.", e);
-            throw new RuntimeException(e);
-        }
-    }
 }
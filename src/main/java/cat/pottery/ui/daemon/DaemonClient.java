@@ -0,0 +1,63 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.ui.daemon;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// forwards a command to the daemon of the project in the current directory and prints what it answers. It is the
+// main class pottery.sh runs when POTTERY_DAEMON=1, so it should not load anything it does not need.
+public final class DaemonClient {
+    private DaemonClient() {}
+
+    public static void main(String[] args) {
+        var workingDirectory = Path.of("").toAbsolutePath();
+        System.exit(forward(DaemonProtocol.socketOf(workingDirectory), workingDirectory, List.of(args), System.out, System.err));
+    }
+
+    public static int forward(Path socket, Path workingDirectory, List<String> args, PrintStream out, PrintStream err) {
+        if (!Files.exists(socket)) {
+            return DaemonProtocol.NO_DAEMON;
+        }
+
+        try (var channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            try {
+                channel.connect(UnixDomainSocketAddress.of(socket));
+            } catch (IOException e) {
+                return DaemonProtocol.NO_DAEMON;
+            }
+
+            var output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            var input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DaemonProtocol.writeRequest(output, new DaemonProtocol.Request(workingDirectory.toString(), args));
+
+            for (;;) {
+                var kind = input.readByte();
+                if (kind == DaemonProtocol.EXIT) {
+                    return input.readInt();
+                }
+
+                var frame = input.readNBytes(input.readInt());
+                var target = kind == DaemonProtocol.ERR ? err : out;
+                target.write(frame);
+                target.flush();
+            }
+        } catch (EOFException e) {
+            err.printf("The daemon stopped before the command finished, its log is in %s.%n", socket.resolveSibling("daemon.log"));
+            return 1;
+        } catch (IOException e) {
+            err.printf("Could not talk to the daemon at %s: %s%n", socket, e.getMessage());
+            return 1;
+        }
+    }
+}
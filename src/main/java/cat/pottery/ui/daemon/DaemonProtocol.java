@@ -0,0 +1,99 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.ui.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// the client sends the working directory and the arguments of the command, the daemon answers with frames of output
+// and a last frame with the exit status
+public final class DaemonProtocol {
+    static final byte OUT = 1;
+    static final byte ERR = 2;
+    static final byte EXIT = 3;
+
+    // pottery.sh starts a daemon when the client exits with it
+    public static final int NO_DAEMON = 111;
+
+    record Request(String workingDirectory, List<String> args) {}
+
+    private DaemonProtocol() {}
+
+    public static Path socketOf(Path projectDirectory) {
+        return projectDirectory.resolve(".pottery").resolve("daemon.sock");
+    }
+
+    static void writeRequest(DataOutputStream output, Request request) throws IOException {
+        output.writeUTF(request.workingDirectory());
+        output.writeInt(request.args().size());
+        for (var arg : request.args()) {
+            output.writeUTF(arg);
+        }
+
+        output.flush();
+    }
+
+    static Request readRequest(DataInputStream input) throws IOException {
+        var workingDirectory = input.readUTF();
+        var argc = input.readInt();
+        var args = new ArrayList<String>(argc);
+        for (var i = 0; i < argc; i++) {
+            args.add(input.readUTF());
+        }
+
+        return new Request(workingDirectory, args);
+    }
+
+    static void writeExit(DataOutputStream output, int status) throws IOException {
+        synchronized (output) {
+            output.writeByte(EXIT);
+            output.writeInt(status);
+            output.flush();
+        }
+    }
+
+    // everything a command prints, also from other threads, goes through here, so frames are never mixed
+    static final class FrameOutputStream extends OutputStream {
+        private final DataOutputStream output;
+        private final byte kind;
+
+        FrameOutputStream(DataOutputStream output, byte kind) {
+            this.output = output;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+
+            synchronized (output) {
+                output.writeByte(kind);
+                output.writeInt(length);
+                output.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (output) {
+                output.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package cat.pottery.ui.daemon;
+
+import cat.pottery.telemetry.Log;
+import cat.pottery.ui.cli.Bootstrap;
+import cat.pottery.ui.cli.Exit;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+// runs the commands of the clients of one project in the same JVM, so the parsed pottery.yaml, the resolved dependency
+// graph, the compiler and the test launcher stay warm between builds. Commands run one at a time, like they would in
+// the same terminal.
+public final class DaemonServer {
+    private static final Duration IDLE_TIMEOUT = Duration.ofHours(3);
+    private static final Duration IDLE_CHECK_INTERVAL = Duration.ofMinutes(1);
+
+    private final Path projectDirectory;
+    private final Path socket;
+    private volatile long lastActivityNanos;
+    private volatile boolean serving;
+    private volatile boolean stopping;
+
+    public DaemonServer(Path projectDirectory, Path socket) {
+        this.projectDirectory = projectDirectory;
+        this.socket = socket;
+    }
+
+    public void run() throws IOException {
+        Exit.runningInDaemon();
+        Files.createDirectories(socket.toAbsolutePath().getParent());
+        // a daemon that was killed leaves its socket behind
+        Files.deleteIfExists(socket);
+
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Log.getInstance().info("Daemon for %s listening on %s.", projectDirectory, socket);
+            lastActivityNanos = System.nanoTime();
+            startIdleWatchdog(server);
+
+            while (!stopping) {
+                try (var client = server.accept()) {
+                    serve(client);
+                } catch (ClosedChannelException e) {
+                    break;
+                } catch (IOException e) {
+                    Log.getInstance().warn("Lost the connection with a client: %s", e.getMessage());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(socket);
+        }
+
+        Log.getInstance().info("Daemon for %s stopped.", projectDirectory);
+    }
+
+    private void serve(SocketChannel client) throws IOException {
+        var input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+        var output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+        var request = DaemonProtocol.readRequest(input);
+
+        serving = true;
+        lastActivityNanos = System.nanoTime();
+        try {
+            var out = new PrintStream(new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.OUT), true);
+            var err = new PrintStream(new DaemonProtocol.FrameOutputStream(output, DaemonProtocol.ERR), true);
+            var status = handle(request, out, err);
+            out.flush();
+            err.flush();
+            DaemonProtocol.writeExit(output, status);
+        } finally {
+            serving = false;
+            lastActivityNanos = System.nanoTime();
+        }
+    }
+
+    private int handle(DaemonProtocol.Request request, PrintStream out, PrintStream err) {
+        var args = request.args();
+        if (!isProjectDirectory(Path.of(request.workingDirectory()))) {
+            err.printf("The daemon at %s serves %s, not %s.%n", socket, projectDirectory, request.workingDirectory());
+            return 1;
+        }
+
+        if (args.equals(List.of("daemon", "--stop"))) {
+            stopping = true;
+            out.printf("Stopped the daemon for %s.%n", projectDirectory);
+            return 0;
+        }
+
+        if (!args.isEmpty() && args.get(0).equals("daemon")) {
+            out.printf("A daemon for %s is already running.%n", projectDirectory);
+            return 0;
+        }
+
+        // watch never returns, it would keep the daemon busy forever
+        if (!args.isEmpty() && args.get(0).equals("watch")) {
+            err.println("watch does not run in the daemon, run it with java -jar instead.");
+            return 2;
+        }
+
+        Log.getInstance().info("Running %s.", String.join(" ", args));
+        var originalOut = System.out;
+        var originalErr = System.err;
+        System.setOut(out);
+        System.setErr(err);
+        try {
+            Bootstrap.run(args.toArray(String[]::new));
+            return 0;
+        } catch (Exit.Requested e) {
+            return e.status();
+        } catch (Throwable e) {
+            Log.getInstance().fatal("The command failed unexpectedly.", e);
+            return 1;
+        } finally {
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+        }
+    }
+
+    private boolean isProjectDirectory(Path workingDirectory) {
+        try {
+            return Files.isSameFile(workingDirectory, projectDirectory);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void startIdleWatchdog(ServerSocketChannel server) {
+        Thread.ofPlatform().daemon().name("pottery-daemon-idle-watchdog").start(() -> {
+            while (server.isOpen()) {
+                try {
+                    Thread.sleep(IDLE_CHECK_INTERVAL);
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                if (!serving && System.nanoTime() - lastActivityNanos > IDLE_TIMEOUT.toNanos()) {
+                    Log.getInstance().info("The daemon for %s was idle for %s, stopping.", projectDirectory, IDLE_TIMEOUT);
+                    stopping = true;
+                    try {
+                        server.close();
+                    } catch (IOException e) {
+                        Log.getInstance().warn("Could not close the daemon socket %s.", socket);
+                    }
+                }
+            }
+        });
+    }
+}
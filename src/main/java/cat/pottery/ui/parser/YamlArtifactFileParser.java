@@ -11,11 +11,18 @@ import cat.pottery.ui.parser.result.ArtifactFileParserResult;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class YamlArtifactFileParser implements ArtifactFileParser {
+    private record ParsedFile(String content, ArtifactFileParserResult.Success result) {}
+
+    // in the daemon, the same pottery.yaml is parsed again by every command, and it rarely changes between them
+    private static final Map<Path, ParsedFile> PARSED_FILES = new ConcurrentHashMap<>();
+
     private final Yaml yaml;
 
     public YamlArtifactFileParser() {
@@ -24,13 +31,30 @@ public class YamlArtifactFileParser implements ArtifactFileParser {
 
     @Override
     public ArtifactFileParserResult parse(Path path) {
-        Map<String, Object> dom;
+        String content;
         try {
-            dom = yaml.load(Files.readString(path));
+            content = Files.readString(path);
         } catch (IOException e) {
             return new ArtifactFileParserResult.Failure(List.of(new ArtifactFileParserResult.ErrorMessage("Could not parse YAML file at %s. Error message: %s".formatted(path.toString(), e.getMessage()))));
         }
 
+        var key = path.toAbsolutePath().normalize();
+        var parsed = PARSED_FILES.get(key);
+        if (parsed != null && parsed.content().equals(content)) {
+            return parsed.result();
+        }
+
+        var result = parseContent(content);
+        if (result instanceof ArtifactFileParserResult.Success success) {
+            PARSED_FILES.put(key, new ParsedFile(content, success));
+        }
+
+        return result;
+    }
+
+    private ArtifactFileParserResult parseContent(String content) {
+        Map<String, Object> dom = yaml.load(content);
+
         var paramMap = (Map<String, String>) dom.getOrDefault("parameters", Map.of());
         var artifact = (Map<String, Object>) dom.get("artifact");
         var platformProduceNormalisedList = new ArrayList<String>(5);
@@ -56,7 +80,7 @@ public class YamlArtifactFileParser implements ArtifactFileParser {
         var manifest = (HashMap<String, String>) artifact.getOrDefault("manifest", new HashMap<>());
         var mainClass = manifest.getOrDefault("main-class", "").toString();
 
-        var dependencies = (List<Map<String, String>>) artifact.getOrDefault("dependencies", Collections.emptyList());
+        var dependencies = (List<Map<String, Object>>) artifact.getOrDefault("dependencies", Collections.emptyList());
         if (dependencies == null) {
             dependencies = new ArrayList<>();
         }
@@ -64,17 +88,54 @@ public class YamlArtifactFileParser implements ArtifactFileParser {
         var parsedDependencies = new ArrayList<Dependency>(dependencies.size());
 
         for (var dep : dependencies) {
-            if (dep.size() != 1) {
+            var exclusions = (List<Object>) dep.getOrDefault("exclusions", Collections.emptyList());
+            if (exclusions == null) {
+                exclusions = Collections.emptyList();
+            }
+
+            if (dep.size() != (dep.containsKey("exclusions") ? 2 : 1)) {
                 return null;
             }
 
+            var excludedDependencies = exclusions.stream().map(exclusion -> exclusion.toString().trim()).toList();
             if (dep.containsKey("production")) {
-                parsedDependencies.add(new Dependency(Dependency.Scope.PRODUCTION, dep.get("production")));
+                parsedDependencies.add(new Dependency(Dependency.Scope.PRODUCTION, dep.get("production").toString(), excludedDependencies));
             } else if (dep.containsKey("test")) {
-                parsedDependencies.add(new Dependency(Dependency.Scope.TEST, dep.get("test")));
+                parsedDependencies.add(new Dependency(Dependency.Scope.TEST, dep.get("test").toString(), excludedDependencies));
+            } else if (dep.containsKey("bom")) {
+                // a BOM only manages versions, there is nothing its exclusions could apply to
+                if (!excludedDependencies.isEmpty()) {
+                    return new ArtifactFileParserResult.Failure(List.of(new ArtifactFileParserResult.ErrorMessage("BOM %s cannot have exclusions, add them to the dependencies that bring the excluded ones.".formatted(dep.get("bom")))));
+                }
+
+                parsedDependencies.add(new Dependency(Dependency.Scope.BOM, dep.get("bom").toString()));
             }
         }
 
+        var resolver = (Map<String, Object>) dom.getOrDefault("resolver", Collections.emptyMap());
+        if (resolver == null) {
+            resolver = Collections.emptyMap();
+        }
+
+        var repositories = (List<Object>) resolver.getOrDefault("repositories", List.of(Resolver.MAVEN_CENTRAL.toString()));
+        if (repositories == null) {
+            repositories = Collections.emptyList();
+        }
+
+        Resolver resolverSettings;
+        try {
+            resolverSettings = new Resolver(
+                    Resolver.Mode.valueOf(resolver.getOrDefault("mode", Resolver.Mode.VIRTUAL.name()).toString().trim().toUpperCase()),
+                    Integer.parseInt(resolver.getOrDefault("concurrency", Resolver.DEFAULT_CONCURRENCY).toString()),
+                    repositories.stream().map(repository -> URI.create(repository.toString().trim())).toList(),
+                    SnapshotPolicy.parse(resolver.getOrDefault("snapshots", "always").toString()),
+                    Resolver.Conflicts.valueOf(resolver.getOrDefault("conflicts", Resolver.Conflicts.HIGHEST.name()).toString().trim().toUpperCase()),
+                    false
+            );
+        } catch (IllegalArgumentException e) {
+            return new ArtifactFileParserResult.Failure(List.of(new ArtifactFileParserResult.ErrorMessage("Invalid resolver section: %s".formatted(e.getMessage()))));
+        }
+
         return new ArtifactFileParserResult.Success(
                 new ArtifactDocument(
                         paramMap,
@@ -85,7 +146,8 @@ public class YamlArtifactFileParser implements ArtifactFileParser {
                                 new Platform(platformVersion, platformProduceNormalisedList),
                                 parsedDependencies,
                                 new Manifest(mainClass)
-                        )
+                        ),
+                        resolverSettings
                 ),
                 Collections.emptyList()
         );
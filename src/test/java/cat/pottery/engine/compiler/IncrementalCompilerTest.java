@@ -0,0 +1,158 @@
+package cat.pottery.engine.compiler;
+
+import cat.pottery.engine.dependencies.maven.DownloadedDependency;
+import cat.pottery.engine.dependencies.maven.MavenDependency;
+import cat.pottery.engine.toolchain.Toolchain;
+import cat.pottery.ui.artifact.*;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalCompilerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void recompiles_the_users_of_a_class_only_when_its_abi_changes() throws IOException {
+        var sources = tempDir.resolve("src");
+        var target = tempDir.resolve("classes");
+        write(sources, "A", "public class A { public int value() { return 1; } }");
+        write(sources, "B", "public class B { public int value() { return new A().value(); } }");
+        write(sources, "C", "public class C { }");
+
+        var compiler = new IncrementalCompiler(Toolchain.systemDefault(), new BuildCache(tempDir.resolve("cache")));
+        assertEquals(new CompilationResult.Compiled(3), compiler.compileTree(document(), sources, target, List.of()));
+        assertEquals(new CompilationResult.UpToDate(), compiler.compileTree(document(), sources, target, List.of()));
+
+        write(sources, "A", "public class A { public int value() { return 2; } }");
+        assertEquals(new CompilationResult.Compiled(1), compiler.compileTree(document(), sources, target, List.of()));
+
+        write(sources, "A", "public class A { public int value() { return 2; } public int other() { return 3; } }");
+        assertEquals(new CompilationResult.Compiled(2), compiler.compileTree(document(), sources, target, List.of()));
+
+        write(sources, "C", "public class C { public int value() { return 4; } }");
+        assertEquals(new CompilationResult.Compiled(1), compiler.compileTree(document(), sources, target, List.of()));
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void does_not_recompile_when_a_jar_only_changes_its_implementation() throws IOException {
+        var compiler = new IncrementalCompiler(Toolchain.systemDefault(), new BuildCache(tempDir.resolve("cache")));
+        var librarySources = tempDir.resolve("library");
+        var libraryClasses = tempDir.resolve("library-classes");
+        var jar = tempDir.resolve("library.jar");
+        write(librarySources, "Library", "public class Library { public static int value() { return 1; } }");
+        compiler.compileTree(document(), librarySources, libraryClasses, List.of());
+        jar(libraryClasses, jar, "Library", 1);
+
+        var sources = tempDir.resolve("src");
+        var target = tempDir.resolve("classes");
+        var dependencies = List.of(new DownloadedDependency(new MavenDependency("pkg", "library", "1.0.0-SNAPSHOT", "jar", MavenDependency.Scope.COMPILE, "jar", Optional.empty()), jar));
+        write(sources, "A", "public class A { public int value() { return Library.value(); } }");
+        assertEquals(new CompilationResult.Compiled(1), compiler.compileTree(document(), sources, target, dependencies));
+
+        write(librarySources, "Library", "public class Library { public static int value() { return 2 + 2; } }");
+        compiler.compileTree(document(), librarySources, libraryClasses, List.of());
+        jar(libraryClasses, jar, "Library", 2);
+        assertEquals(new CompilationResult.UpToDate(), compiler.compileTree(document(), sources, target, dependencies));
+
+        write(librarySources, "Library", "public class Library { public static int value() { return 4; } public static int other() { return 5; } }");
+        compiler.compileTree(document(), librarySources, libraryClasses, List.of());
+        jar(libraryClasses, jar, "Library", 3);
+        assertEquals(new CompilationResult.Compiled(1), compiler.compileTree(document(), sources, target, dependencies));
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void removes_the_outputs_of_deleted_sources_and_resources() throws IOException {
+        var sources = tempDir.resolve("src");
+        var target = tempDir.resolve("classes");
+        write(sources, "A", "public class A { public static class Nested { } }");
+        write(sources, "B", "public class B { }");
+        Files.writeString(sources.resolve("pkg").resolve("application.properties"), "name=a");
+
+        var compiler = new IncrementalCompiler(Toolchain.systemDefault(), new BuildCache(tempDir.resolve("cache")));
+        assertEquals(new CompilationResult.Compiled(2), compiler.compileTree(document(), sources, target, List.of()));
+        assertEquals("name=a", Files.readString(target.resolve("pkg").resolve("application.properties")));
+
+        write(sources, "A", "public class A { }");
+        Files.delete(sources.resolve("pkg").resolve("B.java"));
+        Files.writeString(sources.resolve("pkg").resolve("application.properties"), "name=b");
+        assertEquals(new CompilationResult.Compiled(1), compiler.compileTree(document(), sources, target, List.of()));
+
+        assertTrue(Files.exists(target.resolve("pkg").resolve("A.class")));
+        assertFalse(Files.exists(target.resolve("pkg").resolve("A$Nested.class")));
+        assertFalse(Files.exists(target.resolve("pkg").resolve("B.class")));
+        assertEquals("name=b", Files.readString(target.resolve("pkg").resolve("application.properties")));
+
+        Files.delete(sources.resolve("pkg").resolve("application.properties"));
+        assertEquals(new CompilationResult.UpToDate(), compiler.compileTree(document(), sources, target, List.of()));
+        assertFalse(Files.exists(target.resolve("pkg").resolve("application.properties")));
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void restores_a_tree_that_was_already_compiled_from_the_build_cache() throws IOException {
+        var sources = tempDir.resolve("src");
+        var target = tempDir.resolve("classes");
+        write(sources, "A", "public class A { public int value() { return 1; } }");
+        write(sources, "B", "public class B { public int value() { return new A().value(); } }");
+
+        var buildCache = new BuildCache(tempDir.resolve("cache"));
+        var compiler = new IncrementalCompiler(Toolchain.systemDefault(), buildCache);
+        assertEquals(new CompilationResult.Compiled(2), compiler.compileTree(document(), sources, target, List.of()));
+
+        write(sources, "A", "public class A { public int value() { return 2; } }");
+        assertEquals(new CompilationResult.Compiled(1), compiler.compileTree(document(), sources, target, List.of()));
+
+        // like switching back to the branch of the first build
+        write(sources, "A", "public class A { public int value() { return 1; } }");
+        assertEquals(new CompilationResult.Restored(2), compiler.compileTree(document(), sources, target, List.of()));
+        assertEquals(new CompilationResult.UpToDate(), compiler.compileTree(document(), sources, target, List.of()));
+        assertEquals(new BuildCache.Statistics(1, 2, 2), buildCache.statistics());
+    }
+
+    private static void write(Path sources, String className, String code) throws IOException {
+        Files.createDirectories(sources.resolve("pkg"));
+        Files.writeString(sources.resolve("pkg").resolve(className + ".java"), "package pkg;\n" + code);
+    }
+
+    private static void jar(Path classes, Path jar, String className, int version) throws IOException {
+        try (var output = new ZipOutputStream(Files.newOutputStream(jar))) {
+            output.putNextEntry(new ZipEntry("pkg/" + className + ".class"));
+            output.write(Files.readAllBytes(classes.resolve("pkg").resolve(className + ".class")));
+            output.closeEntry();
+        }
+
+        // a new SNAPSHOT is downloaded again, even if it has the same size
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + version * 1000L));
+    }
+
+    private ArtifactDocument document() {
+        return new ArtifactDocument(
+                Map.of(),
+                new Artifact(
+                        "cat.pottery.testing",
+                        "incremental",
+                        "1.0.0",
+                        new Platform("21", List.of("fatjar")),
+                        List.of(),
+                        new Manifest("pkg.A")
+                )
+        );
+    }
+}
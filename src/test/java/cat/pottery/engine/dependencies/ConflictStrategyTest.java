@@ -0,0 +1,45 @@
+package cat.pottery.engine.dependencies;
+
+import cat.pottery.engine.dependencies.maven.MavenDependency;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConflictStrategyTest {
+    private static final List<ConflictStrategy.Candidate> CANDIDATES = List.of(
+            candidate("2.0.1", 2),
+            candidate("1.7.36", 1),
+            candidate("1.7.30", 1)
+    );
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void highest_chooses_the_newest_version() {
+        assertEquals("2.0.1", ConflictStrategy.HIGHEST.choose("org.slf4j:slf4j-api", CANDIDATES).version());
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void nearest_chooses_the_closest_version_and_the_newest_on_a_tie() {
+        assertEquals("1.7.36", ConflictStrategy.NEAREST.choose("org.slf4j:slf4j-api", CANDIDATES).version());
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void fail_rejects_different_versions_unless_a_range_accepts_them() {
+        var error = assertThrows(DependencyConflictException.class, () -> ConflictStrategy.FAIL.choose("org.slf4j:slf4j-api", CANDIDATES));
+        assertEquals(1, error.conflicts().size());
+
+        var compatible = List.of(candidate("[1.7,1.8)", 1), candidate("1.7.36", 2));
+        assertEquals("1.7.36", ConflictStrategy.FAIL.choose("org.slf4j:slf4j-api", compatible).version());
+    }
+
+    private static ConflictStrategy.Candidate candidate(String version, int depth) {
+        return new ConflictStrategy.Candidate(new MavenDependency("org.slf4j", "slf4j-api", version, "jar", MavenDependency.Scope.RUNTIME, "jar", Optional.empty()), depth);
+    }
+}
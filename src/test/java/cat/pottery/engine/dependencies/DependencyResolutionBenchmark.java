@@ -0,0 +1,98 @@
+package cat.pottery.engine.dependencies;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+// resolves a synthetic repository from scratch on every invocation, run it with -prof gc to see the allocation rate
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DependencyResolutionBenchmark {
+    @Param({ "10" })
+    int depth;
+
+    @Param({ "50" })
+    int width;
+
+    @Param({ "3" })
+    int fanOut;
+
+    @Param({ "3" })
+    int parentChain;
+
+    @Param({ "30" })
+    int properties;
+
+    @Param({ "1" })
+    int boms;
+
+    @Param({ "16" })
+    int concurrency;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Requests {
+        public long requests;
+    }
+
+    private Path repositoryDirectory;
+    private SyntheticRepository repository;
+    private Path workDirectory;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void writeRepository() throws IOException {
+        repositoryDirectory = Files.createTempDirectory("pottery-benchmark-repository");
+        repository = SyntheticRepository.write(repositoryDirectory, new SyntheticRepository.Shape(depth, width, fanOut, parentChain, properties, boms));
+
+        // every download is logged, which would measure the console more than the resolver
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteRepository() throws IOException {
+        System.setOut(stdout);
+        delete(repositoryDirectory);
+    }
+
+    @Setup(Level.Invocation)
+    public void createWorkDirectory() throws IOException {
+        workDirectory = Files.createTempDirectory("pottery-benchmark-work");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteWorkDirectory() throws IOException {
+        delete(workDirectory);
+    }
+
+    @Benchmark
+    public void resolve(Requests requests, Blackhole blackhole) {
+        var resolution = repository.resolve(workDirectory, concurrency);
+        if (resolution.hasFailures()) {
+            throw new IllegalStateException("The synthetic repository could not be resolved.");
+        }
+
+        requests.requests += resolution.statistics().requests();
+        blackhole.consume(resolution.dependencies());
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (var paths = Files.walk(directory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package cat.pottery.engine.dependencies;
+
+import cat.pottery.engine.dependencies.maven.DownloadedDependency;
+import cat.pottery.engine.dependencies.maven.MavenDependency;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadManagerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @Timeout(30)
+    @Tags({ @Tag("integration") })
+    void resolves_every_artifact_of_a_large_graph_once() throws IOException {
+        var shape = new SyntheticRepository.Shape(10, 20, 3, 2, 10, 1);
+        var repository = SyntheticRepository.write(tempDir.resolve("repository"), shape);
+
+        // every download is logged, which would flood the output of the tests
+        var stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        SyntheticRepository.Resolution resolution;
+        try {
+            resolution = repository.resolve(tempDir, 4);
+        } finally {
+            System.setOut(stdout);
+        }
+
+        var jars = resolution.dependencies().stream().filter(dependency -> !dependency.dependency().type().equals("pom")).toList();
+
+        assertFalse(resolution.hasFailures());
+        assertEquals(shape.artifacts(), jars.size());
+        assertTrue(jars.stream().allMatch(dependency -> Files.exists(dependency.downloadPath())));
+        assertEquals(0, resolution.pending());
+        // nothing is fetched twice, even if most artifacts are found through many paths
+        assertEquals(shape.files(), resolution.statistics().requests());
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void nearest_uses_the_shortest_path_even_when_a_longer_one_was_found_first() {
+        var frontier = new ResolutionFrontier(16);
+        var manager = new DownloadManager(frontier, new ConcurrentHashMap<>(), false, new PomContextRegistry(new ConcurrentHashMap<>(), new ConcurrentHashMap<>()), ConflictStrategy.NEAREST, tempDir.resolve("m2"));
+        var a = dependency("a", "1.0.0");
+        var b = dependency("b", "1.0.0");
+        var c = dependency("c", "1.0.0");
+        manager.trackDependency(a);
+        manager.trackDependency(b);
+        manager.trackDependency(c);
+
+        // a -> long-1 -> long-2 -> shared -> lib:1.0.0 and c -> mid-1 -> mid-2 -> lib:2.0.0 are found first
+        var shared = dependency("shared", "1.0.0");
+        track(manager, a, dependency("long-1", "1.0.0"), dependency("long-2", "1.0.0"), shared, dependency("lib", "1.0.0"));
+        track(manager, c, dependency("mid-1", "1.0.0"), dependency("mid-2", "1.0.0"), dependency("lib", "2.0.0"));
+
+        // then b -> shared makes lib:1.0.0 nearer than lib:2.0.0
+        manager.trackTransitiveDependency(b, shared);
+
+        var dependencies = complete(manager, frontier);
+        var lib = dependencies.stream().filter(dependency -> dependency.artifactId().equals("lib")).findFirst().orElseThrow();
+        assertEquals("1.0.0", lib.version());
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void excludes_a_dependency_only_when_every_path_to_it_excludes_it() {
+        var frontier = new ResolutionFrontier(16);
+        var manager = new DownloadManager(frontier, new ConcurrentHashMap<>(), false, new PomContextRegistry(new ConcurrentHashMap<>(), new ConcurrentHashMap<>()), ConflictStrategy.HIGHEST, tempDir.resolve("m2"));
+        var a = dependency("a", "1.0.0");
+        var b = dependency("b", "1.0.0");
+        var shared = dependency("shared", "1.0.0");
+        var excluded = dependency("excluded", "1.0.0");
+        manager.trackDependency(a);
+        manager.trackDependency(b);
+
+        // shared is processed through a, which excludes excluded, before b, which does not, is found
+        manager.trackTransitiveDependency(a, shared.withExclusions(List.of("cat.pottery.testing:excluded")));
+        manager.trackTransitiveDependency(shared, excluded);
+        assertEquals(1, manager.avoidedDependencies().size());
+
+        manager.trackTransitiveDependency(b, shared);
+
+        var dependencies = complete(manager, frontier);
+        assertTrue(dependencies.stream().anyMatch(dependency -> dependency.artifactId().equals("excluded")));
+        assertEquals(List.of(), manager.avoidedDependencies());
+    }
+
+    private static void track(DownloadManager manager, MavenDependency... path) {
+        for (var i = 1; i < path.length; i++) {
+            manager.trackTransitiveDependency(path[i - 1], path[i]);
+        }
+    }
+
+    // completes every dependency that was found, like the workers do once they processed it
+    private static List<MavenDependency> complete(DownloadManager manager, ResolutionFrontier frontier) {
+        manager.seeded();
+        while (frontier.size() > 0) {
+            try {
+                manager.completed(frontier.take());
+                frontier.release();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return manager.downloadedDependencies().join().stream().map(DownloadedDependency::dependency).toList();
+    }
+
+    private static MavenDependency dependency(String artifactId, String version) {
+        return new MavenDependency("cat.pottery.testing", artifactId, version, "jar", MavenDependency.Scope.COMPILE, "jar", Optional.empty());
+    }
+}
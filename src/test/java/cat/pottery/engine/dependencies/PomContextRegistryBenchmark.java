@@ -0,0 +1,56 @@
+package cat.pottery.engine.dependencies;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PomContextRegistryBenchmark {
+    // roughly the size of spring-boot-dependencies: a few hundred version properties and about a thousand managed dependencies
+    @Param({ "300" })
+    int properties;
+
+    @Param({ "1000" })
+    int managedDependencies;
+
+    private PomContextRegistry registry;
+    private String context;
+    private String[] versions;
+
+    @Setup
+    public void setUp() {
+        registry = new PomContextRegistry(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+
+        var bomProperties = new HashMap<String, String>();
+        for (var i = 0; i < properties; i++) {
+            bomProperties.put("library-%d.version".formatted(i), "%d.0.${revision}".formatted(i));
+        }
+        bomProperties.put("revision", "${project.version}");
+        registry.register("org.springframework.boot", "spring-boot-dependencies", "3.1.0", bomProperties);
+
+        context = registry.registerFromParent("org.springframework.boot", "spring-boot-dependencies", "3.1.0", "cat.pottery.benchmark", "service", "1.0.0", Map.of("java.version", "21"));
+
+        versions = new String[managedDependencies];
+        for (var i = 0; i < managedDependencies; i++) {
+            versions[i] = "${library-%d.version}".formatted(i % properties);
+            registry.addVersionSuggestion(context, "cat.pottery.benchmark:library-%d".formatted(i), versions[i]);
+        }
+    }
+
+    @Benchmark
+    public void resolveManagedVersions(Blackhole blackhole) {
+        for (var version : versions) {
+            blackhole.consume(registry.resolveExpression(context, "cat.pottery.benchmark"));
+            blackhole.consume(registry.resolveExpression(context, version));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package cat.pottery.engine.dependencies;
+
+import cat.pottery.engine.dependencies.maven.MavenBOM;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PomContextRegistryTest {
+    @Test
+    @Tags({ @Tag("unit") })
+    void resolves_properties_through_the_parent_chain() {
+        var registry = new PomContextRegistry(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+
+        var parent = registry.register("cat.pottery", "parent", "1.0.0", Map.of("picocli.version", "4.7.${picocli.patch}", "picocli.patch", "0", "release", "${project.version}"));
+        var child = registry.registerFromParent("cat.pottery", "parent", "1.0.0", "cat.pottery", "child", "2.0.0", Map.of("picocli.patch", "1"));
+
+        assertEquals("4.7.1", registry.resolveExpression(child, "${picocli.version}"));
+        assertEquals("4.7.0", registry.resolveExpression(parent, "${picocli.version}"));
+        assertEquals("v2.0.0-4.7.1", registry.resolveExpression(child, "v${release}-${picocli.version}"));
+        assertEquals("${unknown}", registry.resolveExpression(child, "${unknown}"));
+        assertEquals("", registry.resolveExpression(child, null));
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void leaves_cyclic_properties_unresolved() {
+        var registry = new PomContextRegistry(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+
+        var context = registry.register("cat.pottery", "cycle", "1.0.0", Map.of("a", "${b}", "b", "${a}"));
+
+        assertEquals("${a}", registry.resolveExpression(context, "${a}"));
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void keeps_the_first_registration_of_a_pom() {
+        var registry = new PomContextRegistry(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+
+        var bom = registry.register("org.springframework.boot", "spring-boot-dependencies", "3.1.0", Map.of("jackson.version", "2.15.0"));
+        var child = registry.registerFromParent("org.springframework.boot", "spring-boot-dependencies", "3.1.0", "cat.pottery", "child", "1.0.0", Map.of());
+        assertEquals("2.15.0", registry.resolveExpression(child, "${jackson.version}"));
+
+        assertEquals(bom, registry.register("org.springframework.boot", "spring-boot-dependencies", "3.1.0", Map.of()));
+        assertEquals("2.15.0", registry.resolveExpression(child, "${jackson.version}"));
+
+        assertFalse(registry.hasContext(registry.contextIdFor("cat.pottery", "missing-parent", "1.0.0")));
+        registry.registerFromParent("cat.pottery", "missing-parent", "1.0.0", "cat.pottery", "orphan", "1.0.0", Map.of());
+        assertFalse(registry.hasContext(registry.contextIdFor("cat.pottery", "missing-parent", "1.0.0")));
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void flattens_each_bom_once_and_prefers_the_pinned_versions() {
+        var registry = new PomContextRegistry(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        var bom = new MavenBOM("com.fasterxml.jackson", "jackson-bom", "2.17.0", MavenBOM.Scope.IMPORT);
+        var flattened = new AtomicInteger();
+
+        for (var i = 0; i < 3; i++) {
+            var managedVersions = registry.managedVersionsOf(bom, ignored -> {
+                flattened.incrementAndGet();
+                return Map.of("com.fasterxml.jackson.core:jackson-databind", "2.17.0");
+            });
+            registry.importVersionSuggestions(managedVersions);
+        }
+
+        assertEquals(1, flattened.get());
+        assertEquals("2.17.0", registry.resolveDefaultVersion("com.fasterxml.jackson.core:jackson-databind"));
+
+        registry.pinVersions(Map.of("com.fasterxml.jackson.core:jackson-databind", "2.16.1"));
+        assertEquals("2.16.1", registry.resolveDefaultVersion("com.fasterxml.jackson.core:jackson-databind"));
+        assertEquals(Optional.empty(), registry.pinnedVersionOf("com.fasterxml.jackson.core:jackson-core"));
+    }
+}
@@ -0,0 +1,77 @@
+package cat.pottery.engine.dependencies;
+
+import cat.pottery.engine.dependencies.maven.DownloadedDependency;
+import cat.pottery.engine.dependencies.maven.MavenDependency;
+import cat.pottery.ui.artifact.*;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResolvedGraphLockTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void reads_the_graph_it_wrote_for_the_same_document() throws IOException {
+        var lock = new ResolvedGraphLock(tempDir.resolve("resolved-graph.lock"));
+        var jar = Files.createFile(tempDir.resolve("picocli-4.7.0.jar"));
+        var dependency = new MavenDependency("info.picocli", "picocli", "4.7.0", "jar", MavenDependency.Scope.COMPILE, "jar", Optional.empty());
+
+        var fingerprint = lock.fingerprintOf(document("4.7.0"));
+        lock.write(fingerprint, List.of(new DownloadedDependency(dependency, jar)));
+
+        var graph = lock.read(fingerprint).orElseThrow();
+        assertEquals(1, graph.size());
+        assertEquals(dependency, graph.get(0).dependency());
+        assertEquals(jar, graph.get(0).downloadPath());
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void ignores_the_graph_when_the_document_changed() throws IOException {
+        var lock = new ResolvedGraphLock(tempDir.resolve("resolved-graph.lock"));
+        var jar = Files.createFile(tempDir.resolve("picocli-4.7.0.jar"));
+        var dependency = new MavenDependency("info.picocli", "picocli", "4.7.0", "jar", MavenDependency.Scope.COMPILE, "jar", Optional.empty());
+
+        lock.write(lock.fingerprintOf(document("4.7.0")), List.of(new DownloadedDependency(dependency, jar)));
+
+        assertTrue(lock.read(lock.fingerprintOf(document("4.7.1"))).isEmpty());
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void ignores_the_graph_when_a_jar_is_missing() {
+        var lock = new ResolvedGraphLock(tempDir.resolve("resolved-graph.lock"));
+        var dependency = new MavenDependency("info.picocli", "picocli", "4.7.0", "jar", MavenDependency.Scope.COMPILE, "jar", Optional.empty());
+
+        var fingerprint = lock.fingerprintOf(document("4.7.0"));
+        lock.write(fingerprint, List.of(new DownloadedDependency(dependency, tempDir.resolve("picocli-4.7.0.jar"))));
+
+        assertTrue(lock.read(fingerprint).isEmpty());
+    }
+
+    private ArtifactDocument document(String picocliVersion) {
+        return new ArtifactDocument(
+                Map.of("picocli.version", picocliVersion),
+                new Artifact(
+                        "cat.pottery.testing",
+                        "lock",
+                        "1.0.0",
+                        new Platform("21", List.of("fatjar")),
+                        List.of(new Dependency(Dependency.Scope.PRODUCTION, "info.picocli:picocli:${picocli.version}")),
+                        new Manifest("Main")
+                )
+        );
+    }
+}
@@ -0,0 +1,221 @@
+package cat.pottery.engine.dependencies;
+
+import cat.pottery.engine.dependencies.maven.DownloadedDependency;
+import cat.pottery.engine.dependencies.maven.MavenBOM;
+import cat.pottery.engine.dependencies.maven.MavenDependency;
+import cat.pottery.engine.dependencies.repository.HostPermits;
+import cat.pottery.engine.dependencies.repository.RepositoryClient;
+import cat.pottery.engine.dependencies.store.ArtifactStore;
+import cat.pottery.ui.artifact.Resolver;
+import cat.pottery.ui.artifact.SnapshotPolicy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+// writes a Maven repository with a layered graph: a root artifact depends on every artifact of the first level, and every
+// artifact of a level depends on fanOut artifacts of the next one, so most artifacts are reached through many paths
+final class SyntheticRepository {
+    private static final String GROUP_ID = "cat.pottery.synthetic";
+    private static final String VERSION = "1.0.0";
+
+    // parentChain POMs are inherited by every artifact, and declare the properties their versions are resolved with.
+    // Artifacts managed by a BOM are declared without a version, so they only resolve when the BOMs are imported
+    record Shape(int depth, int width, int fanOut, int parentChain, int properties, int boms) {
+        int artifacts() {
+            return 1 + depth * width;
+        }
+
+        // a POM and a jar per artifact, and a POM per parent and BOM
+        int files() {
+            return artifacts() * 2 + parentChain + boms;
+        }
+    }
+
+    record Resolution(List<DownloadedDependency> dependencies, RepositoryClient.Statistics statistics, boolean hasFailures, int pending) {}
+
+    private final Path root;
+    private final Shape shape;
+
+    private SyntheticRepository(Path root, Shape shape) {
+        this.root = root;
+        this.shape = shape;
+    }
+
+    static SyntheticRepository write(Path root, Shape shape) throws IOException {
+        var repository = new SyntheticRepository(root, shape);
+        repository.writeParents();
+        repository.writeBoms();
+        repository.writeArtifacts();
+        return repository;
+    }
+
+    Path root() {
+        return root;
+    }
+
+    MavenDependency rootArtifact() {
+        return new MavenDependency(GROUP_ID, "root", VERSION, "jar", MavenDependency.Scope.COMPILE, "jar", Optional.empty());
+    }
+
+    List<MavenBOM> boms() {
+        return IntStream.range(0, shape.boms()).mapToObj(bom -> new MavenBOM(GROUP_ID, "bom-" + bom, VERSION, MavenBOM.Scope.IMPORT)).toList();
+    }
+
+    // resolves the root artifact like the platform mode of the DependencyResolver does, into a new local repository and store
+    Resolution resolve(Path workDirectory, int concurrency) {
+        var frontier = new ResolutionFrontier(concurrency * 4);
+        var registry = new PomContextRegistry(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        var manager = new DownloadManager(frontier, new ConcurrentHashMap<>(), false, registry, ConflictStrategy.of(Resolver.Conflicts.HIGHEST), workDirectory.resolve("m2"));
+        var store = new ArtifactStore(workDirectory.resolve("store"));
+
+        var workers = new ArrayList<Thread>(concurrency);
+        try (var client = new RepositoryClient(List.of(root.toUri()), new HostPermits(concurrency))) {
+            var importer = new DependencyDownloadWorker(manager, frontier, registry, client, store, SnapshotPolicy.ALWAYS);
+            boms().forEach(importer::importBom);
+
+            for (var i = 0; i < concurrency; i++) {
+                workers.add(Thread.ofPlatform().start(new DependencyDownloadWorker(manager, frontier, registry, client, store, SnapshotPolicy.ALWAYS)));
+            }
+
+            manager.trackDependency(rootArtifact());
+            manager.seeded();
+
+            var dependencies = manager.downloadedDependencies().join();
+            return new Resolution(dependencies, client.statistics(), manager.hasFailures(), frontier.size());
+        } finally {
+            workers.forEach(Thread::interrupt);
+        }
+    }
+
+    private void writeParents() throws IOException {
+        for (var level = 0; level < shape.parentChain(); level++) {
+            var properties = new StringBuilder();
+            if (level == shape.parentChain() - 1) {
+                properties.append("    <synthetic.version>%s</synthetic.version>\n".formatted(VERSION));
+            }
+
+            // properties are spread over the chain, and resolved through the topmost one
+            for (var property = level; property < shape.properties(); property += shape.parentChain()) {
+                properties.append("    <property-%d.version>${synthetic.version}</property-%d.version>\n".formatted(property, property));
+            }
+
+            writePom("parent-" + level, parentOf(level + 1) + """
+                      <packaging>pom</packaging>
+                      <properties>
+                    %s  </properties>
+                    """.formatted(properties));
+        }
+    }
+
+    private void writeBoms() throws IOException {
+        for (var bom = 0; bom < shape.boms(); bom++) {
+            var managed = new StringBuilder();
+            for (var index = 0; index < shape.depth() * shape.width(); index++) {
+                if (managedBy(index) == bom) {
+                    managed.append(dependency(artifactId(index), VERSION));
+                }
+            }
+
+            writePom("bom-" + bom, """
+                      <packaging>pom</packaging>
+                      <dependencyManagement>
+                        <dependencies>
+                    %s    </dependencies>
+                      </dependencyManagement>
+                    """.formatted(managed));
+        }
+    }
+
+    private void writeArtifacts() throws IOException {
+        writeArtifact("root", IntStream.range(0, shape.width()).toArray());
+
+        for (var level = 0; level < shape.depth(); level++) {
+            for (var column = 0; column < shape.width(); column++) {
+                var index = level * shape.width() + column;
+                if (level == shape.depth() - 1) {
+                    writeArtifact(artifactId(index), new int[0]);
+                    continue;
+                }
+
+                var next = (level + 1) * shape.width();
+                var first = column * shape.fanOut();
+                var children = IntStream.range(0, shape.fanOut()).map(child -> next + (first + child) % shape.width()).distinct().toArray();
+                writeArtifact(artifactId(index), children);
+            }
+        }
+    }
+
+    private void writeArtifact(String artifactId, int[] children) throws IOException {
+        var dependencies = new StringBuilder();
+        for (var child : children) {
+            dependencies.append(dependency(artifactId(child), versionOf(child)));
+        }
+
+        var pom = writePom(artifactId, parentOf(0) + """
+                  <dependencies>
+                %s  </dependencies>
+                """.formatted(dependencies));
+        Files.writeString(pom.resolveSibling("%s-%s.jar".formatted(artifactId, VERSION)), artifactId);
+    }
+
+    private String versionOf(int index) {
+        if (managedBy(index) >= 0) {
+            return null;
+        }
+
+        if (shape.parentChain() == 0) {
+            return VERSION;
+        }
+
+        return shape.properties() == 0 ? "${synthetic.version}" : "${property-%d.version}".formatted(index % shape.properties());
+    }
+
+    private int managedBy(int index) {
+        return shape.boms() == 0 ? -1 : index % shape.boms();
+    }
+
+    private String parentOf(int level) {
+        if (level >= shape.parentChain()) {
+            return "";
+        }
+
+        return """
+                  <parent>
+                    <groupId>%s</groupId>
+                    <artifactId>parent-%d</artifactId>
+                    <version>%s</version>
+                  </parent>
+                """.formatted(GROUP_ID, level, VERSION);
+    }
+
+    private static String artifactId(int index) {
+        return "artifact-" + index;
+    }
+
+    private static String dependency(String artifactId, String version) {
+        return """
+                      <dependency>
+                        <groupId>%s</groupId>
+                        <artifactId>%s</artifactId>
+                %s      </dependency>
+                """.formatted(GROUP_ID, artifactId, version == null ? "" : "        <version>%s</version>\n".formatted(version));
+    }
+
+    private Path writePom(String artifactId, String body) throws IOException {
+        var directory = Files.createDirectories(root.resolve("%s/%s/%s".formatted(GROUP_ID.replace('.', '/'), artifactId, VERSION)));
+        return Files.writeString(directory.resolve("%s-%s.pom".formatted(artifactId, VERSION)), """
+                <project xmlns="http://maven.apache.org/POM/4.0.0">
+                  <modelVersion>4.0.0</modelVersion>
+                  <groupId>%s</groupId>
+                  <artifactId>%s</artifactId>
+                  <version>%s</version>
+                %s</project>
+                """.formatted(GROUP_ID, artifactId, VERSION, body));
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Tags;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,4 +33,16 @@ class MavenDependencyTest {
         var choosen = older.max(newer);
         assertEquals(newer.version(), choosen.version());
     }
-}
\ No newline at end of file
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void excludes_dependencies_matching_an_exclusion_or_a_wildcard() {
+        var logback = new MavenDependency("ch.qos.logback", "logback-classic", "1.4.11", "jar", MavenDependency.Scope.RUNTIME, "jar", Optional.empty());
+        var slf4j = new MavenDependency("org.slf4j", "slf4j-api", "2.0.9", "jar", MavenDependency.Scope.RUNTIME, "jar", Optional.empty());
+
+        var dep = new MavenDependency("cat.pottery", "library", "1.0.0", "jar", MavenDependency.Scope.RUNTIME, "jar", Optional.empty()).withExclusions(List.of("org.slf4j:*"));
+        assertTrue(dep.excludes(slf4j));
+        assertFalse(dep.excludes(logback));
+        assertTrue(dep.withExclusions(List.of("*:logback-classic")).excludes(logback));
+    }
+}
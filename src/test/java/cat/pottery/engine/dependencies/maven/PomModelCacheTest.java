@@ -0,0 +1,57 @@
+package cat.pottery.engine.dependencies.maven;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PomModelCacheTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void reads_the_model_it_wrote_for_the_same_pom() throws IOException {
+        var cache = new PomModelCache();
+        var pom = Files.writeString(tempDir.resolve("library.pom"), "<project/>");
+        var model = model();
+
+        cache.write(pom, model);
+
+        assertTrue(Files.exists(cache.sidecarOf(pom)));
+        assertEquals(model, cache.read(pom).orElseThrow());
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void ignores_the_model_when_the_pom_changed() throws IOException {
+        var cache = new PomModelCache();
+        var pom = Files.writeString(tempDir.resolve("library.pom"), "<project/>");
+
+        cache.write(pom, model());
+        Files.writeString(pom, "<project></project>");
+
+        assertTrue(cache.read(pom).isEmpty());
+    }
+
+    private PomModel model() {
+        return new PomModel(
+                null,
+                "library",
+                null,
+                Optional.of(new PomModel.Parent("cat.pottery", "parent", "1.0.0")),
+                Map.of("picocli.version", "4.7.0"),
+                List.of(new PomModel.Dependency("info.picocli", "picocli", "${picocli.version}", null, null, null)),
+                List.of(new PomModel.Dependency("info.picocli", "picocli", null, "jar", "test", "sources", true, List.of(new PomModel.Exclusion("org.slf4j", "*"))))
+        );
+    }
+}
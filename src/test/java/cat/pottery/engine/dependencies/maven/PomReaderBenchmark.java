@@ -0,0 +1,97 @@
+package cat.pottery.engine.dependencies.maven;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PomReaderBenchmark {
+    @Param({ "1000" })
+    int managedDependencies;
+
+    private byte[] pom;
+    private PomReader pomReader;
+    private DocumentBuilderFactory documentBuilderFactory;
+
+    @Setup
+    public void setUp() {
+        var builder = new StringBuilder();
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        builder.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+        builder.append("  <modelVersion>4.0.0</modelVersion>\n");
+        builder.append("  <groupId>cat.pottery.benchmark</groupId>\n");
+        builder.append("  <artifactId>bom</artifactId>\n");
+        builder.append("  <version>1.0.0</version>\n");
+        builder.append("  <properties>\n");
+        for (var i = 0; i < managedDependencies / 3; i++) {
+            builder.append("    <library-%d.version>%d.0.0</library-%d.version>\n".formatted(i, i, i));
+        }
+        builder.append("  </properties>\n");
+        builder.append("  <dependencyManagement>\n    <dependencies>\n");
+        for (var i = 0; i < managedDependencies; i++) {
+            builder.append("""
+                          <dependency>
+                            <groupId>cat.pottery.benchmark</groupId>
+                            <artifactId>library-%d</artifactId>
+                            <version>${library-%d.version}</version>
+                            <scope>compile</scope>
+                          </dependency>
+                    """.formatted(i, i / 3));
+        }
+        builder.append("    </dependencies>\n  </dependencyManagement>\n");
+        builder.append("</project>\n");
+
+        pom = builder.toString().getBytes(StandardCharsets.UTF_8);
+        pomReader = new PomReader();
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+    }
+
+    @Benchmark
+    public PomModel stax() throws Exception {
+        return pomReader.read(new ByteArrayInputStream(pom));
+    }
+
+    @Benchmark
+    public void dom(Blackhole blackhole) throws Exception {
+        // the same walk the resolver did before reading POMs with StAX
+        var document = documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(pom));
+        var node = document.getDocumentElement().getFirstChild();
+        while (node != null) {
+            switch (node.getNodeName()) {
+                case "groupId", "artifactId", "version" -> blackhole.consume(node.getTextContent());
+                case "properties" -> {
+                    for (var property = node.getFirstChild(); property != null; property = property.getNextSibling()) {
+                        if (property.getNodeType() == Node.ELEMENT_NODE) {
+                            blackhole.consume(property.getTextContent());
+                        }
+                    }
+                }
+                case "dependencyManagement" -> {
+                    for (var dependencies = node.getFirstChild(); dependencies != null; dependencies = dependencies.getNextSibling()) {
+                        if (!dependencies.getNodeName().equals("dependencies")) {
+                            continue;
+                        }
+
+                        for (var dependency = dependencies.getFirstChild(); dependency != null; dependency = dependency.getNextSibling()) {
+                            for (var j = 0; j < dependency.getChildNodes().getLength(); j++) {
+                                blackhole.consume(dependency.getChildNodes().item(j).getTextContent());
+                            }
+                        }
+                    }
+                }
+            }
+
+            node = node.getNextSibling();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cat.pottery.engine.dependencies.maven;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PomReaderTest {
+    private static final String POM = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <project xmlns="http://maven.apache.org/POM/4.0.0">
+              <modelVersion>4.0.0</modelVersion>
+              <parent>
+                <groupId>cat.pottery</groupId>
+                <artifactId>parent</artifactId>
+                <version>1.0.0</version>
+              </parent>
+              <artifactId>library</artifactId>
+              <properties>
+                <picocli.version>
+                  4.7.0
+                </picocli.version>
+              </properties>
+              <dependencyManagement>
+                <dependencies>
+                  <dependency>
+                    <groupId>info.picocli</groupId>
+                    <artifactId>picocli</artifactId>
+                    <version>${picocli.version}</version>
+                  </dependency>
+                </dependencies>
+              </dependencyManagement>
+              <dependencies>
+                <dependency>
+                  <groupId>info.picocli</groupId>
+                  <artifactId>picocli</artifactId>
+                  <scope>test</scope>
+                  <classifier>sources</classifier>
+                </dependency>
+                <dependency>
+                  <groupId>org.slf4j</groupId>
+                  <artifactId>slf4j-api</artifactId>
+                  <version>2.0.9</version>
+                  <optional>true</optional>
+                  <exclusions>
+                    <exclusion>
+                      <groupId>*</groupId>
+                      <artifactId>*</artifactId>
+                    </exclusion>
+                  </exclusions>
+                </dependency>
+              </dependencies>
+              <build>
+                <plugins>
+                  <plugin>
+                    <artifactId>maven-compiler-plugin</artifactId>
+                    <dependencies>
+                      <dependency>
+                        <groupId>org.ow2.asm</groupId>
+                        <artifactId>asm</artifactId>
+                        <version>9.4</version>
+                      </dependency>
+                    </dependencies>
+                  </plugin>
+                </plugins>
+              </build>
+            </project>
+            """;
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void reads_the_parts_of_the_pom_used_by_the_resolver() throws XMLStreamException {
+        var pom = new PomReader().read(new ByteArrayInputStream(POM.getBytes(StandardCharsets.UTF_8)));
+
+        assertNull(pom.groupId());
+        assertEquals("library", pom.artifactId());
+        assertNull(pom.version());
+        assertEquals(new PomModel.Parent("cat.pottery", "parent", "1.0.0"), pom.parent().orElseThrow());
+        assertEquals(Map.of("picocli.version", "4.7.0"), pom.properties());
+        assertEquals(List.of(new PomModel.Dependency("info.picocli", "picocli", "${picocli.version}", null, null, null)), pom.managedDependencies());
+        assertEquals(List.of(
+                new PomModel.Dependency("info.picocli", "picocli", null, null, "test", "sources"),
+                new PomModel.Dependency("org.slf4j", "slf4j-api", "2.0.9", null, null, null, true, List.of(new PomModel.Exclusion("*", "*")))
+        ), pom.dependencies());
+    }
+}
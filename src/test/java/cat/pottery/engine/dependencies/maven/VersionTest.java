@@ -0,0 +1,47 @@
+package cat.pottery.engine.dependencies.maven;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionTest {
+    @Test
+    @Tags({ @Tag("unit") })
+    void orders_versions_like_maven() {
+        var ordered = List.of("1.0-alpha1", "1.0-beta", "1.0-milestone-2", "1.0-rc1", "1.0-SNAPSHOT", "1.0", "1.0-sp", "1.0.1", "1.9", "1.10", "2.0.0-M1", "2.0.0");
+
+        for (var i = 1; i < ordered.size(); i++) {
+            var lower = Version.of(ordered.get(i - 1));
+            var higher = Version.of(ordered.get(i));
+            assertTrue(lower.compareTo(higher) < 0, "%s < %s".formatted(lower, higher));
+            assertTrue(higher.compareTo(lower) > 0, "%s > %s".formatted(higher, lower));
+        }
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void considers_equivalent_versions_equal() {
+        assertEquals(Version.of("1.0"), Version.of("1.0.0"));
+        assertEquals(Version.of("1.0"), Version.of("1-ga"));
+        assertEquals(Version.of("1.0-RC1"), Version.of("1.0-cr1"));
+        assertEquals(0, Version.of("1.0.0").compareTo(Version.of("1.0-final")));
+        assertSame(Version.of("3.2.1"), Version.of("3.2.1"));
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void parses_version_ranges() {
+        var range = VersionRange.parse("[1.0,2.0)");
+
+        assertTrue(range.contains(Version.of("1.0")));
+        assertTrue(range.contains(Version.of("1.9.9")));
+        assertFalse(range.contains(Version.of("2.0")));
+        assertEquals("2.0", range.decidedVersion());
+        assertEquals("1.5", VersionRange.parse("[1.5,)").decidedVersion());
+        assertEquals("1.2", VersionRange.parse("[1.2]").decidedVersion());
+    }
+}
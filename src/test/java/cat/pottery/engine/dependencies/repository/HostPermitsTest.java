@@ -0,0 +1,65 @@
+package cat.pottery.engine.dependencies.repository;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostPermitsTest {
+    private static final URI REPOSITORY = URI.create("https://repo.example.com/maven2/a.jar");
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void grows_up_to_the_maximum_while_the_host_answers_fast() {
+        var permits = new HostPermits(2, 8);
+
+        respond(permits, 200, FAST, 200);
+
+        var statistics = permits.statistics().get(0);
+        assertEquals("https://repo.example.com", statistics.host());
+        assertEquals(8, statistics.limit());
+        assertEquals(200, statistics.requests());
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void halves_the_limit_when_the_host_is_overloaded() {
+        var permits = new HostPermits(2, 8);
+        respond(permits, 200, FAST, 200);
+
+        respond(permits, 429, FAST, 1);
+
+        var statistics = permits.statistics().get(0);
+        assertEquals(4, statistics.limit());
+        assertEquals(8, statistics.highestLimit());
+        assertEquals(1, statistics.overloads());
+    }
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void shrinks_the_limit_when_the_answers_start_to_queue_up() {
+        var permits = new HostPermits(8, 8);
+        respond(permits, 200, FAST, 10);
+
+        respond(permits, 200, FAST * 20, 10);
+
+        var statistics = permits.statistics().get(0);
+        assertTrue(statistics.limit() < 8);
+        assertEquals(0, statistics.overloads());
+    }
+
+    private static void respond(HostPermits permits, int statusCode, long latencyNanos, int times) {
+        for (var i = 0; i < times; i++) {
+            permits.withPermit(REPOSITORY, permit -> {
+                permit.responded(statusCode, latencyNanos);
+                return CompletableFuture.completedFuture(null);
+            }).join();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package cat.pottery.engine.dependencies.repository;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoryClientTest {
+    @TempDir
+    Path tempDir;
+
+    private HttpServer repository;
+    private final AtomicBoolean interruptNextDownload = new AtomicBoolean(false);
+    private final AtomicBoolean misplaceNextRange = new AtomicBoolean(false);
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startRepository() throws IOException {
+        repository = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        repository.createContext("/maven2/", exchange -> {
+            var path = exchange.getRequestURI().getPath();
+            if (path.contains("missing-1.0.0.jar")) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+
+            if (path.endsWith(".sha1")) {
+                var checksum = path.contains("corrupted") ? "0".repeat(40) : sha1Of(contentOf(path.substring(0, path.length() - 5)));
+                respond(exchange, 200, checksum.getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            var body = contentOf(path);
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            var range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null) {
+                ranges.add(range);
+                var from = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                // like a proxy that answers with another range than the requested one
+                var announced = misplaceNextRange.getAndSet(false) ? 0 : from;
+                exchange.getResponseHeaders().add("Content-Range", "bytes %d-%d/%d".formatted(announced, body.length - 1, body.length));
+                respond(exchange, 206, Arrays.copyOfRange(body, from, body.length));
+                return;
+            }
+
+            if (interruptNextDownload.getAndSet(false)) {
+                // announce the whole body, but only send half of it before dropping the connection
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body, 0, body.length / 2);
+                exchange.getResponseBody().flush();
+                throw new IOException("connection dropped");
+            }
+
+            respond(exchange, 200, body);
+        });
+        repository.start();
+    }
+
+    @AfterEach
+    void stopRepository() {
+        repository.stop(0);
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void downloads_artifacts_concurrently_with_a_shared_client() {
+        try (var client = new RepositoryClient(List.of(repositoryUri()), new HostPermits(4))) {
+            var jar = client.download("cat/pottery/a/1.0.0/a-1.0.0.jar", tempDir.resolve("a.jar"));
+            var pom = client.download("cat/pottery/a/1.0.0/a-1.0.0.pom", tempDir.resolve("a.pom"));
+
+            CompletableFuture.allOf(jar, pom).join();
+
+            assertArrayEquals(contentOf("/maven2/cat/pottery/a/1.0.0/a-1.0.0.jar"), read(jar.join()));
+            assertArrayEquals(contentOf("/maven2/cat/pottery/a/1.0.0/a-1.0.0.pom"), read(pom.join()));
+
+            var statistics = client.statistics();
+            assertEquals(4, statistics.requests());
+            assertEquals(0, statistics.failedRequests());
+            assertEquals(4, statistics.http2Requests() + statistics.http11Requests());
+        }
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void downloads_a_target_once_when_two_clients_fetch_it_at_the_same_time() {
+        try (var first = new RepositoryClient(List.of(repositoryUri()), new HostPermits(4));
+             var second = new RepositoryClient(List.of(repositoryUri()), new HostPermits(4))) {
+            var target = tempDir.resolve("large.jar");
+            var firstDownload = first.download("cat/pottery/large/1.0.0/large-1.0.0.jar", target);
+            var secondDownload = second.download("cat/pottery/large/1.0.0/large-1.0.0.jar", target);
+
+            CompletableFuture.allOf(firstDownload, secondDownload).join();
+
+            assertArrayEquals(contentOf("/maven2/cat/pottery/large/1.0.0/large-1.0.0.jar"), read(target));
+            assertEquals(2, first.statistics().requests() + second.statistics().requests());
+            assertFalse(Files.exists(tempDir.resolve("large.jar.part")));
+        }
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void fails_and_removes_the_file_when_the_artifact_does_not_exist() {
+        try (var client = new RepositoryClient(List.of(repositoryUri()), new HostPermits(4))) {
+            var target = tempDir.resolve("missing.jar");
+            var download = client.download("cat/pottery/missing/1.0.0/missing-1.0.0.jar", target);
+
+            var error = assertThrows(CompletionException.class, download::join);
+            assertInstanceOf(RepositoryException.class, error.getCause());
+            assertFalse(Files.exists(target));
+            assertEquals(1, client.statistics().failedRequests());
+        }
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void resumes_an_interrupted_download_from_where_it_stopped() {
+        interruptNextDownload.set(true);
+
+        try (var client = new RepositoryClient(List.of(repositoryUri()), new HostPermits(4))) {
+            var target = client.download("cat/pottery/large/1.0.0/large-1.0.0.jar", tempDir.resolve("large.jar")).join();
+
+            assertArrayEquals(contentOf("/maven2/cat/pottery/large/1.0.0/large-1.0.0.jar"), read(target));
+            assertEquals(1, ranges.size());
+            assertNotEquals("bytes=0-", ranges.get(0));
+            assertEquals(1, client.statistics().resumedDownloads());
+            assertFalse(Files.exists(tempDir.resolve("large.jar.part")));
+        }
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void downloads_from_scratch_when_the_resumed_range_is_not_the_requested_one() {
+        interruptNextDownload.set(true);
+        misplaceNextRange.set(true);
+
+        try (var client = new RepositoryClient(List.of(repositoryUri()), new HostPermits(4))) {
+            var target = client.download("cat/pottery/large/1.0.0/large-1.0.0.jar", tempDir.resolve("large.jar")).join();
+
+            assertArrayEquals(contentOf("/maven2/cat/pottery/large/1.0.0/large-1.0.0.jar"), read(target));
+            assertEquals(1, ranges.size());
+            assertEquals(0, client.statistics().resumedDownloads());
+            assertFalse(Files.exists(tempDir.resolve("large.jar.part")));
+        }
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void rejects_an_artifact_that_does_not_match_its_checksum() {
+        try (var client = new RepositoryClient(List.of(repositoryUri()), new HostPermits(4))) {
+            var target = tempDir.resolve("corrupted.jar");
+            var download = client.download("cat/pottery/corrupted/1.0.0/corrupted-1.0.0.jar", target);
+
+            var error = assertThrows(CompletionException.class, download::join);
+            assertInstanceOf(RepositoryException.class, error.getCause());
+            assertFalse(Files.exists(target));
+            assertFalse(Files.exists(tempDir.resolve("corrupted.jar.part")));
+            assertEquals(1, client.statistics().checksumMismatches());
+        }
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void fails_over_to_the_next_repository_and_ranks_the_broken_one_last() throws IOException {
+        var broken = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        broken.createContext("/", exchange -> respond(exchange, 503, new byte[0]));
+        broken.start();
+
+        var brokenUri = URI.create("http://127.0.0.1:%d/maven2".formatted(broken.getAddress().getPort()));
+        try (var client = new RepositoryClient(List.of(brokenUri, repositoryUri()), new HostPermits(4))) {
+            for (var i = 0; i < 4; i++) {
+                var target = client.download("cat/pottery/a/1.0.0/a-%d.jar".formatted(i), tempDir.resolve("a-%d.jar".formatted(i))).join();
+                assertArrayEquals(contentOf("/maven2/cat/pottery/a/1.0.0/a-%d.jar".formatted(i)), read(target));
+            }
+
+            assertTrue(client.uriOf("a.jar").toString().startsWith(repositoryUri().toString()));
+            var statistics = client.statistics().repositories();
+            assertTrue(statistics.get(0).errors() > 0);
+            assertTrue(statistics.get(0).requests() <= 2);
+            assertEquals(0, statistics.get(1).errors());
+        } finally {
+            broken.stop(0);
+        }
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void downloads_from_a_file_repository_and_fails_over_when_the_file_is_missing() throws IOException {
+        var local = tempDir.resolve("local-repository");
+        var artifact = Files.createDirectories(local.resolve("cat/pottery/a/1.0.0")).resolve("a-1.0.0.jar");
+        Files.writeString(artifact, "local");
+        Files.writeString(artifact.resolveSibling("a-1.0.0.jar.sha1"), sha1Of("local".getBytes(StandardCharsets.UTF_8)));
+
+        try (var client = new RepositoryClient(List.of(local.toUri(), repositoryUri()), new HostPermits(4))) {
+            var fallback = client.download("cat/pottery/b/1.0.0/b-1.0.0.jar", tempDir.resolve("b.jar")).join();
+            assertArrayEquals(contentOf("/maven2/cat/pottery/b/1.0.0/b-1.0.0.jar"), read(fallback));
+            assertEquals(1, client.statistics().repositories().get(0).notFound());
+
+            var target = client.download("cat/pottery/a/1.0.0/a-1.0.0.jar", tempDir.resolve("a.jar")).join();
+            assertEquals("local", Files.readString(target));
+        }
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void revalidates_an_unchanged_file_without_downloading_it_again() {
+        try (var client = new RepositoryClient(List.of(repositoryUri()), new HostPermits(4))) {
+            var target = tempDir.resolve("a-1.0.0-SNAPSHOT.jar");
+            var first = client.download("cat/pottery/a/1.0.0-SNAPSHOT/a-1.0.0-SNAPSHOT.jar", target, Optional.empty()).join();
+            assertTrue(first.modified());
+            assertEquals(Optional.of("\"v1\""), first.validators().etag());
+
+            var requestsBefore = client.statistics().requests();
+            var second = client.download("cat/pottery/a/1.0.0-SNAPSHOT/a-1.0.0-SNAPSHOT.jar", target, Optional.of(first.validators())).join();
+
+            assertFalse(second.modified());
+            assertEquals(1, client.statistics().requests() - requestsBefore);
+            assertEquals(1, client.statistics().notModified());
+            assertArrayEquals(contentOf("/maven2/cat/pottery/a/1.0.0-SNAPSHOT/a-1.0.0-SNAPSHOT.jar"), read(target));
+        }
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void never_contacts_the_repository_when_offline() {
+        try (var client = new RepositoryClient(List.of(repositoryUri()), new HostPermits(4), true)) {
+            var download = client.download("cat/pottery/a/1.0.0/a-1.0.0.jar", tempDir.resolve("a.jar"));
+
+            var error = assertThrows(CompletionException.class, download::join);
+            assertTrue(assertInstanceOf(RepositoryException.class, error.getCause()).isOffline());
+            assertEquals(0, client.statistics().requests());
+            assertFalse(Files.exists(tempDir.resolve("a.jar")));
+        }
+    }
+
+    private URI repositoryUri() {
+        return URI.create("http://127.0.0.1:%d/maven2".formatted(repository.getAddress().getPort()));
+    }
+
+    private static byte[] contentOf(String path) {
+        return path.repeat(path.contains("large") ? 20_000 : 1).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private static String sha1Of(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private byte[] read(Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package cat.pottery.engine.dependencies.store;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArtifactStoreTest {
+    private static final String JAR = "info/picocli/picocli/4.7.0/picocli-4.7.0.jar";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @Tags({ @Tag("unit") })
+    void downloads_a_file_once_and_shares_it_between_projects() throws IOException {
+        var store = new ArtifactStore(tempDir.resolve("store"));
+        var downloads = new AtomicInteger(0);
+
+        var first = tempDir.resolve("first/.pottery/m2/picocli-4.7.0.jar");
+        var second = tempDir.resolve("second/.pottery/m2/picocli-4.7.0.jar");
+
+        store.fetch(JAR, first, target -> download(target, downloads)).join();
+        store.fetch(JAR, second, target -> download(target, downloads)).join();
+
+        assertEquals(1, downloads.get());
+        assertEquals("picocli", Files.readString(second));
+        assertTrue(Files.isSameFile(first, second) || store.statistics().copies() == 1);
+        assertEquals(1, store.statistics().reused());
+        assertEquals(1, store.statistics().stored());
+    }
+
+    private CompletableFuture<Path> download(Path target, AtomicInteger downloads) {
+        downloads.incrementAndGet();
+        try {
+            Files.createDirectories(target.getParent());
+            return CompletableFuture.completedFuture(Files.writeString(target, "picocli"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
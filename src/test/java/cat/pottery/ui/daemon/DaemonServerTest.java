@@ -0,0 +1,54 @@
+package cat.pottery.ui.daemon;
+
+import cat.pottery.engine.toolchain.Toolchain;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Tags;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DaemonServerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @Tags({ @Tag("integration") })
+    void runs_the_commands_of_its_clients_until_it_is_stopped() throws Exception {
+        var socket = DaemonProtocol.socketOf(tempDir);
+        assertEquals(DaemonProtocol.NO_DAEMON, forward(socket, List.of("--version"), new ByteArrayOutputStream()));
+
+        var server = CompletableFuture.runAsync(() -> {
+            try {
+                new DaemonServer(tempDir, socket).run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        for (var i = 0; i < 100 && !Files.exists(socket); i++) {
+            Thread.sleep(50);
+        }
+
+        var output = new ByteArrayOutputStream();
+        assertEquals(0, forward(socket, List.of("--version"), output));
+        assertTrue(output.toString().contains(Toolchain.systemDefault().potteryVersion()));
+
+        assertEquals(0, forward(socket, List.of("daemon", "--stop"), new ByteArrayOutputStream()));
+        server.get(10, TimeUnit.SECONDS);
+        assertFalse(Files.exists(socket));
+    }
+
+    private int forward(Path socket, List<String> args, ByteArrayOutputStream output) {
+        var printStream = new PrintStream(output, true);
+        return DaemonClient.forward(socket, tempDir, args, printStream, printStream);
+    }
+}
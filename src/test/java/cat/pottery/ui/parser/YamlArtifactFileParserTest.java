@@ -8,12 +8,18 @@
 package cat.pottery.ui.parser;
 
 import cat.pottery.ui.artifact.Dependency;
+import cat.pottery.ui.artifact.Resolver;
+import cat.pottery.ui.artifact.SnapshotPolicy;
 import cat.pottery.ui.parser.result.ArtifactFileParserResult;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Tags;
 import org.junit.jupiter.api.Test;
 
+import java.net.URI;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -79,4 +85,31 @@ public class YamlArtifactFileParserTest {
         assertEquals(Dependency.Scope.TEST, dependencies.get(1).scope());
         assertEquals("org.junit.jupiter:junit-jupiter-api:5.9.1", dependencies.get(1).qualifiedName());
     }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    public void parses_the_resolver_section() {
+        var parser = new YamlArtifactFileParser();
+
+        var defaults = (ArtifactFileParserResult.Success) parser.parse(Path.of("src", "test", "resources", "integration-test", "yaml-parser", "valid-pottery.yaml"));
+        assertEquals(Resolver.defaults(), defaults.document().resolver());
+
+        var configured = (ArtifactFileParserResult.Success) parser.parse(Path.of("src", "test", "resources", "integration-test", "yaml-parser", "resolver-pottery.yaml"));
+        assertEquals(Resolver.Mode.PLATFORM, configured.document().resolver().mode());
+        assertEquals(32, configured.document().resolver().concurrency());
+        assertEquals(List.of(URI.create("https://maven.example.com/releases/"), Resolver.MAVEN_CENTRAL), configured.document().resolver().repositories());
+        assertEquals(new SnapshotPolicy(Optional.of(Duration.ofMinutes(60))), configured.document().resolver().snapshots());
+        assertEquals(Resolver.Conflicts.NEAREST, configured.document().resolver().conflicts());
+        assertEquals(new Dependency(Dependency.Scope.BOM, "com.fasterxml.jackson:jackson-bom:2.17.0"), configured.document().artifact().dependencies().get(0));
+    }
+
+    @Test
+    @Tags({ @Tag("integration") })
+    public void rejects_exclusions_on_a_bom() {
+        var parser = new YamlArtifactFileParser();
+
+        var result = parser.parse(Path.of("src", "test", "resources", "integration-test", "yaml-parser", "bom-exclusions-pottery.yaml"));
+
+        assertTrue(result instanceof ArtifactFileParserResult.Failure);
+    }
 }